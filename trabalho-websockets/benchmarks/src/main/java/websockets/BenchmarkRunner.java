@@ -0,0 +1,26 @@
+package websockets;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Igual ao org.openjdk.jmh.Main, mas sempre com o profiler de alocação (-prof gc) ativado
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        try {
+            CommandLineOptions cli = new CommandLineOptions(args);
+            Options options = new OptionsBuilder()
+                    .parent(cli)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        } catch (CommandLineOptionException e) {
+            System.err.println("Erro nos argumentos: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
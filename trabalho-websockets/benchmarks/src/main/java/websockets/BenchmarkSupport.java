@@ -0,0 +1,193 @@
+package websockets;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    // O ChatHistory ainda escreve no console; o custo do terminal não deve entrar na medição
+    static PrintStream silenceConsole() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return original;
+    }
+
+    static Path createTempDir() throws IOException {
+        return Files.createTempDirectory("websockets-bench");
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    static Message textMessage(long sequence, String sender, String content) {
+        return new Message(new java.util.UUID(sequence, 0x5EED), sender, content,
+                System.currentTimeMillis(), Message.MessageType.TEXT);
+    }
+
+    static String content(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append("ola pessoal, tudo bem? ");
+        }
+        return sb.substring(0, length);
+    }
+
+    // Buffer em memória usado como "fio" entre o escritor e o leitor de um codec no mesmo thread
+    static final class InMemoryPipe {
+        private byte[] buffer = new byte[8192];
+        private int readPosition;
+        private int writePosition;
+
+        private final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureCapacity(1);
+                buffer[writePosition++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                ensureCapacity(length);
+                System.arraycopy(bytes, offset, buffer, writePosition, length);
+                writePosition += length;
+            }
+        };
+
+        private final InputStream input = new InputStream() {
+            @Override
+            public int read() {
+                if (readPosition == writePosition) {
+                    return -1;
+                }
+                return buffer[readPosition++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                int available = writePosition - readPosition;
+                if (available == 0) {
+                    return -1;
+                }
+                int count = Math.min(available, length);
+                System.arraycopy(buffer, readPosition, bytes, offset, count);
+                readPosition += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return writePosition - readPosition;
+            }
+        };
+
+        private void ensureCapacity(int extra) {
+            if (readPosition > 0 && readPosition == writePosition) {
+                readPosition = 0;
+                writePosition = 0;
+            }
+            if (writePosition + extra > buffer.length) {
+                int live = writePosition - readPosition;
+                byte[] target = live + extra > buffer.length ? new byte[Math.max(buffer.length * 2, live + extra)] : buffer;
+                System.arraycopy(buffer, readPosition, target, 0, live);
+                buffer = target;
+                readPosition = 0;
+                writePosition = live;
+            }
+        }
+
+        OutputStream output() {
+            return output;
+        }
+
+        InputStream input() {
+            return input;
+        }
+
+        void clear() {
+            readPosition = 0;
+            writePosition = 0;
+        }
+    }
+
+    // Socket sem rede: entrega um handshake pronto e depois bloqueia até ser fechado; tudo o que é escrito é descartado
+    static final class FakeSocket extends Socket {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final InputStream input;
+        private final int port;
+
+        FakeSocket(byte[] handshake, int port) {
+            this.port = port;
+            InputStream blockUntilClosed = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        closed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new EOFException();
+                }
+            };
+            this.input = new SequenceInputStream(new ByteArrayInputStream(handshake), blockUntilClosed);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return input;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public int getPort() {
+            return port;
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) {
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed.getCount() == 0;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed.countDown();
+        }
+    }
+
+    static byte[] welcomeFrom(String remoteUsername, String localUsername) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Handshake.welcome(remoteUsername, Handshake.hello(localUsername, null), new Session(localUsername), false)
+                .writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
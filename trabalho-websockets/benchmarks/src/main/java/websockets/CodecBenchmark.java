@@ -0,0 +1,81 @@
+package websockets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final int BATCH_SIZE = 32;
+
+    // "binary+deflate" usa o codec binário com compressão do conteúdo
+    @Param({FrameCodec.BINARY, FrameCodec.BINARY + "+" + Handshake.COMPRESSION_DEFLATE, FrameCodec.JAVA})
+    public String codec;
+
+    @Param({"16", "256"})
+    public int contentLength;
+
+    private BenchmarkSupport.InMemoryPipe encodePipe;
+    private FrameCodec encoder;
+    private FrameCodec loopback;
+    private String content;
+    private long sequence;
+    private final List<Frame> batch = new ArrayList<>(BATCH_SIZE);
+
+    @Setup
+    public void setup() throws IOException {
+        content = BenchmarkSupport.content(contentLength);
+        String[] parts = codec.split("\\+");
+        String name = parts[0];
+        String compression = parts.length > 1 ? parts[1] : Handshake.COMPRESSION_NONE;
+
+        // Sem leitor: os bytes são descartados após cada escrita
+        encodePipe = new BenchmarkSupport.InMemoryPipe();
+        encoder = FrameCodec.create(name, new DataInputStream(encodePipe.input()), new DataOutputStream(encodePipe.output()),
+                Handshake.SUPPORTED_FEATURES, compression);
+
+        // Mesmo codec escrevendo e lendo do mesmo buffer, para medir o ciclo completo
+        BenchmarkSupport.InMemoryPipe loopbackPipe = new BenchmarkSupport.InMemoryPipe();
+        loopback = FrameCodec.create(name, new DataInputStream(loopbackPipe.input()), new DataOutputStream(loopbackPipe.output()),
+                Handshake.SUPPORTED_FEATURES, compression);
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        encoder.write(nextFrame());
+        encodePipe.clear();
+    }
+
+    // Custo por mensagem quando BATCH_SIZE frames vão juntos em um único frame de lote
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void encodeBatch() throws IOException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(nextFrame());
+        }
+        encoder.write(batch);
+        batch.clear();
+        encodePipe.clear();
+    }
+
+    @Benchmark
+    public List<Frame> roundTrip() throws IOException {
+        loopback.write(nextFrame());
+        return loopback.read();
+    }
+
+    private Frame nextFrame() {
+        long seq = ++sequence;
+        return new Frame(seq, BenchmarkSupport.textMessage(seq, "alice", content));
+    }
+}
@@ -0,0 +1,77 @@
+package websockets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DedupBenchmark {
+    private static final int PROBES = 4096;
+
+    // "synchronized" era o que o Peer usava para processedMessages antes do relay em workers
+    @Param({"synchronized", "concurrent"})
+    public String impl;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Set<UUID> processed;
+    private UUID[] hits;
+    private UUID[] misses;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int advance() {
+            next = (next + 1) & (PROBES - 1);
+            return next;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        processed = impl.equals("synchronized")
+                ? Collections.synchronizedSet(new HashSet<>())
+                : ConcurrentHashMap.newKeySet();
+
+        Random random = new Random(42);
+        UUID[] all = new UUID[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = new UUID(random.nextLong(), random.nextLong());
+            processed.add(all[i]);
+        }
+
+        hits = new UUID[PROBES];
+        misses = new UUID[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            // Cópias, para que a busca compare por equals e não por identidade
+            UUID hit = all[random.nextInt(size)];
+            hits[i] = new UUID(hit.getMostSignificantBits(), hit.getLeastSignificantBits());
+            misses[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+    }
+
+    @Benchmark
+    public boolean lookupHit(Cursor cursor) {
+        return processed.contains(hits[cursor.advance()]);
+    }
+
+    @Benchmark
+    public boolean lookupMiss(Cursor cursor) {
+        return processed.contains(misses[cursor.advance()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean lookupHitContended(Cursor cursor) {
+        return processed.contains(hits[cursor.advance()]);
+    }
+}
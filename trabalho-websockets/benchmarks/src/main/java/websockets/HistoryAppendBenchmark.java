@@ -0,0 +1,41 @@
+package websockets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryAppendBenchmark {
+    private Path workDir;
+    private PrintStream console;
+    private ChatHistory chatHistory;
+    private String message;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        console = BenchmarkSupport.silenceConsole();
+        workDir = BenchmarkSupport.createTempDir();
+        chatHistory = new ChatHistory("bench", 0, new Metrics(), workDir.resolve("history.txt").toString());
+        message = "[alice]: " + BenchmarkSupport.content(64);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        System.setOut(console);
+        chatHistory.close();
+        BenchmarkSupport.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public void addMessage() {
+        chatHistory.addMessage(message);
+    }
+}
@@ -0,0 +1,52 @@
+package websockets;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelayBenchmark {
+    @Param({"1", "4", "16", "64"})
+    public int connections;
+
+    private Path workDir;
+    private PrintStream console;
+    private Peer peer;
+    private long sequence;
+
+    // Um peer novo por iteração: IDs processados e histórico em memória crescem a cada chamada,
+    // e sem isso as últimas iterações mediriam um peer bem maior que as primeiras
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        console = BenchmarkSupport.silenceConsole();
+        workDir = BenchmarkSupport.createTempDir();
+        peer = new Peer(0, "bench", workDir.resolve("history.txt").toString());
+
+        for (int i = 0; i < connections; i++) {
+            String remote = "fake-" + i;
+            byte[] welcome = BenchmarkSupport.welcomeFrom(remote, "bench");
+            peer.connectSocket(new BenchmarkSupport.FakeSocket(welcome, 20000 + i), remote);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        peer.stop();
+        System.setOut(console);
+        BenchmarkSupport.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public boolean relay() {
+        long seq = ++sequence;
+        return peer.relayMessage(BenchmarkSupport.textMessage(seq, "origin", "mensagem " + seq));
+    }
+}
@@ -0,0 +1,235 @@
+package websockets;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class BinaryFrameCodec implements FrameCodec {
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    // Tabela de símbolos: nomes de usuário e de nós vão uma vez por conexão e depois só como id
+    private static final int MAX_SYMBOLS = 4096;
+    private static final int SYMBOL_DEFINE = 0;
+    private static final int SYMBOL_LITERAL = 0xFFFF;
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final boolean batching;
+    private final PayloadCompressor compressor;
+    private final boolean symbols;
+    private final Map<String, Integer> outboundSymbols = new HashMap<>();
+    private final List<String> inboundSymbols = new ArrayList<>();
+    // Buffer de leitura reaproveitado entre frames; só a String final é alocada
+    private byte[] scratch = new byte[256];
+
+    // compressor null quando a compressão negociada é "none"
+    public BinaryFrameCodec(DataInputStream in, DataOutputStream out, boolean batching, PayloadCompressor compressor,
+                            boolean symbols) {
+        this.in = in;
+        this.out = out;
+        this.batching = batching;
+        this.compressor = compressor;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public String getName() {
+        return BINARY;
+    }
+
+    @Override
+    public void write(List<Frame> frames) throws IOException {
+        if (batching) {
+            out.writeShort(frames.size());
+        }
+        for (Frame frame : frames) {
+            writeFrame(frame);
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        if (compressor != null) {
+            compressor.close();
+        }
+    }
+
+    @Override
+    public List<Frame> read() throws IOException {
+        if (!batching) {
+            return Collections.singletonList(readFrame());
+        }
+        int count = in.readUnsignedShort();
+        List<Frame> frames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            frames.add(readFrame());
+        }
+        return frames;
+    }
+
+    private void writeFrame(Frame frame) throws IOException {
+        Message message = frame.getMessage();
+        out.writeLong(frame.getSequence());
+        out.writeLong(message.getId().getMostSignificantBits());
+        out.writeLong(message.getId().getLeastSignificantBits());
+        out.writeByte(message.getType().ordinal());
+        out.writeLong(message.getTimestamp());
+        writeSymbol(message.getSenderUsername());
+        writeContent(message.getContentBytes());
+        writeTrace(message.getTrace());
+    }
+
+    private Frame readFrame() throws IOException {
+        long sequence = in.readLong();
+        UUID id = new UUID(in.readLong(), in.readLong());
+        int typeIndex = in.readUnsignedByte();
+        Message.MessageType[] types = Message.MessageType.values();
+        if (typeIndex >= types.length) {
+            throw new IOException("Tipo de mensagem desconhecido: " + typeIndex);
+        }
+        long timestamp = in.readLong();
+        String sender = readSymbol();
+        String content = readContent();
+        Message message = new Message(id, sender, content, timestamp, types[typeIndex]);
+        message.setTrace(readTrace());
+        return new Frame(sequence, message);
+    }
+
+    private void writeTrace(Trace trace) throws IOException {
+        if (trace == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeSymbol(trace.getOriginNode());
+        out.writeLong(trace.getOriginMicros());
+        List<Trace.Hop> hops = trace.getHops();
+        out.writeByte(hops.size());
+        for (Trace.Hop hop : hops) {
+            writeSymbol(hop.getNode());
+            out.writeLong(hop.getReceivedMicros());
+            out.writeLong(hop.getForwardedMicros());
+        }
+    }
+
+    private Trace readTrace() throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String originNode = readSymbol();
+        long originMicros = in.readLong();
+        int hopCount = in.readUnsignedByte();
+        if (hopCount > Trace.MAX_HOPS) {
+            throw new IOException("Trace com hops demais: " + hopCount);
+        }
+        List<Trace.Hop> hops = new ArrayList<>(hopCount);
+        for (int i = 0; i < hopCount; i++) {
+            hops.add(new Trace.Hop(readSymbol(), in.readLong(), in.readLong()));
+        }
+        return new Trace(originNode, originMicros, hops);
+    }
+
+    // Com compressão: um byte indica se o conteúdo vai cru ou em deflate (tamanho original + bytes comprimidos)
+    private void writeContent(byte[] bytes) throws IOException {
+        if (compressor == null) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return;
+        }
+        if (!compressor.shouldCompress(bytes.length)) {
+            out.writeBoolean(false);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return;
+        }
+        int compressedLength = compressor.compress(bytes);
+        out.writeBoolean(true);
+        out.writeInt(bytes.length);
+        out.writeInt(compressedLength);
+        out.write(compressor.getBuffer(), 0, compressedLength);
+    }
+
+    private String readContent() throws IOException {
+        if (compressor == null || !in.readBoolean()) {
+            return readString();
+        }
+        int rawLength = in.readInt();
+        int compressedLength = in.readInt();
+        if (rawLength < 0 || rawLength > MAX_STRING_BYTES || compressedLength < 0 || compressedLength > MAX_STRING_BYTES) {
+            throw new IOException("Tamanho de conteúdo comprimido inválido: " + rawLength + "/" + compressedLength);
+        }
+        if (compressedLength > scratch.length) {
+            scratch = new byte[Math.max(compressedLength, scratch.length * 2)];
+        }
+        in.readFully(scratch, 0, compressedLength);
+        byte[] raw = compressor.decompress(scratch, compressedLength, rawLength);
+        return new String(raw, 0, rawLength, StandardCharsets.UTF_8);
+    }
+
+    private void writeSymbol(String value) throws IOException {
+        if (!symbols) {
+            writeString(value);
+            return;
+        }
+        Integer id = outboundSymbols.get(value);
+        if (id != null) {
+            out.writeShort(id);
+        } else if (outboundSymbols.size() < MAX_SYMBOLS) {
+            outboundSymbols.put(value, outboundSymbols.size() + 1);
+            out.writeShort(SYMBOL_DEFINE);
+            writeString(value);
+        } else {
+            out.writeShort(SYMBOL_LITERAL);
+            writeString(value);
+        }
+    }
+
+    // Mensagens do mesmo remetente compartilham a mesma instância de String
+    private String readSymbol() throws IOException {
+        if (!symbols) {
+            return readString();
+        }
+        int id = in.readUnsignedShort();
+        if (id == SYMBOL_LITERAL) {
+            return readString();
+        }
+        if (id == SYMBOL_DEFINE) {
+            if (inboundSymbols.size() >= MAX_SYMBOLS) {
+                throw new IOException("Tabela de símbolos cheia");
+            }
+            String value = readString();
+            inboundSymbols.add(value);
+            return value;
+        }
+        if (id > inboundSymbols.size()) {
+            throw new IOException("Símbolo desconhecido: " + id);
+        }
+        return inboundSymbols.get(id - 1);
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString() throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Tamanho de string inválido: " + length);
+        }
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        in.readFully(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -5,25 +5,42 @@ import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.*;
 
 public class ChatHistory {
+    public static final String DEFAULT_FILE_NAME = "history.txt";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
     private final String chatFileName;
-    private final List<String> messageHistory;
+    // Strings ou Messages; as mensagens recebidas só são formatadas quando o histórico é exibido
+    private final List<Object> messageHistory;
     private final String username;
     private final int port;
+    private final LatencyHistogram appendLatency;
+    private Writer chatWriter;
+    // O horário do arquivo tem resolução de segundos, então só é formatado quando o segundo muda
+    private long cachedSecond = -1;
+    private String cachedTimestamp;
 
     public ChatHistory(String username, int port) {
+        this(username, port, new Metrics());
+    }
+
+    public ChatHistory(String username, int port, Metrics metrics) {
+        this(username, port, metrics, DEFAULT_FILE_NAME);
+    }
+
+    public ChatHistory(String username, int port, Metrics metrics, String fileName) {
         this.username = username;
         this.port = port;
-        this.messageHistory = new CopyOnWriteArrayList<>();
-        this.chatFileName = initializeChatFile();
+        this.appendLatency = metrics.histogram("p2p_history_append_seconds",
+                "Tempo para anexar uma mensagem ao arquivo de histórico");
+        this.messageHistory = Collections.synchronizedList(new ArrayList<>());
+        this.chatFileName = initializeChatFile(fileName);
     }
 
-    private String initializeChatFile() {
+    private String initializeChatFile(String fileName) {
         try {
-            String fileName = "history.txt";
-            
             if (Files.exists(Paths.get(fileName))) {
                 System.out.println("Continuando chat existente: " + fileName);
                 loadExistingMessages(fileName);
@@ -39,7 +56,7 @@ public class ChatHistory {
             
         } catch (IOException e) {
             System.err.println("Erro ao inicializar arquivo de chat: " + e.getMessage());
-            return "history.txt";
+            return fileName;
         }
     }
 
@@ -71,26 +88,69 @@ public class ChatHistory {
 
     public void addMessage(String message) {
         messageHistory.add(message);
-        appendToChatFile(message);
+        appendToChatFile(null, message);
+    }
+
+    // Mesmo formato de Message.toString(), escrito em partes para não montar a string por mensagem
+    public void addMessage(Message message) {
+        messageHistory.add(message);
+        appendToChatFile(message.getSenderUsername(), message.getContent());
     }
 
-    private void appendToChatFile(String message) {
+    private synchronized void appendToChatFile(String sender, String text) {
+        long start = System.nanoTime();
         try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-            String logEntry = "[" + timestamp + "] " + message + "\n";
-            Files.write(Paths.get(chatFileName), logEntry.getBytes(), StandardOpenOption.APPEND);
+            if (chatWriter == null) {
+                chatWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(chatFileName, true)));
+            }
+            chatWriter.write('[');
+            chatWriter.write(timestamp());
+            chatWriter.write("] ");
+            if (sender != null) {
+                chatWriter.write('[');
+                chatWriter.write(sender);
+                chatWriter.write("]: ");
+            }
+            chatWriter.write(text);
+            chatWriter.write('\n');
+            chatWriter.flush();
         } catch (IOException e) {
             System.err.println("Erro ao salvar mensagem no arquivo: " + e.getMessage());
+        } finally {
+            appendLatency.recordSince(start);
         }
     }
 
+    private String timestamp() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = LocalDateTime.now().format(TIME_FORMAT);
+        }
+        return cachedTimestamp;
+    }
+
+    public synchronized void close() {
+        if (chatWriter == null) {
+            return;
+        }
+        try {
+            chatWriter.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar arquivo de chat: " + e.getMessage());
+        }
+        chatWriter = null;
+    }
+
     public void printMessageHistory() {
         System.out.println("\n=== Histórico de Mensagens ===");
         if (messageHistory.isEmpty()) {
             System.out.println("Nenhuma mensagem no histórico.");
         } else {
-            for (String msg : messageHistory) {
-                System.out.println(msg);
+            synchronized (messageHistory) {
+                for (Object msg : messageHistory) {
+                    System.out.println(msg);
+                }
             }
         }
         System.out.println("============================\n");
@@ -115,7 +175,7 @@ public class ChatHistory {
 
     public void listChatHistoryFiles() {
         try {
-            Path historyFile = Paths.get("history.txt");
+            Path historyFile = Paths.get(chatFileName);
             if (!Files.exists(historyFile)) {
                 System.out.println("Arquivo de histórico não existe.");
                 return;
@@ -135,7 +195,7 @@ public class ChatHistory {
 
     public static String[] readUserInfoFromHistory() {
         try {
-            Path historyFile = Paths.get("history.txt");
+            Path historyFile = Paths.get(DEFAULT_FILE_NAME);
             if (!Files.exists(historyFile)) {
                 return null;
             }
@@ -167,7 +227,13 @@ public class ChatHistory {
     }
 
     public List<String> getMessageHistory() {
-        return new ArrayList<>(messageHistory);
+        List<String> result = new ArrayList<>();
+        synchronized (messageHistory) {
+            for (Object msg : messageHistory) {
+                result.add(msg.toString());
+            }
+        }
+        return result;
     }
 
     public int getMessageCount() {
@@ -0,0 +1,36 @@
+package websockets;
+
+public class ConnectionInfo {
+    private final String username;
+    private final String address;
+    private final boolean connected;
+    private final boolean resumed;
+
+    public ConnectionInfo(String username, String address, boolean connected, boolean resumed) {
+        this.username = username;
+        this.address = address;
+        this.connected = connected;
+        this.resumed = resumed;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    @Override
+    public String toString() {
+        return username + "@" + address;
+    }
+}
@@ -0,0 +1,45 @@
+package websockets;
+
+// Saída do CLI: imprime os eventos do peer e reimprime o prompt
+public class ConsoleListener implements PeerListener {
+    private void print(String text) {
+        System.out.println("\n" + text);
+        System.out.print("> ");
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        print(message.toString());
+    }
+
+    @Override
+    public void onMessageSent(Message message) {
+        print("Enviando: " + message);
+    }
+
+    @Override
+    public void onPeerConnected(String username, String address, boolean resumed) {
+        print("Conectado a " + username + "@" + address + (resumed ? " (sessão retomada)" : ""));
+    }
+
+    @Override
+    public void onPeerDisconnected(String username, String address, boolean graceful) {
+        print(graceful ? username + " desconectado." : "Conexão perdida com " + username + "@" + address);
+    }
+
+    @Override
+    public void onPeerDiscovered(String username, String address) {
+        print("Peer descoberto: " + username + " em " + address);
+    }
+
+    @Override
+    public void onNotice(String text) {
+        print(text);
+    }
+
+    @Override
+    public void onError(String text, Throwable cause) {
+        System.err.println("\n" + text + (cause != null && cause.getMessage() != null ? ": " + cause.getMessage() : ""));
+        System.out.print("> ");
+    }
+}
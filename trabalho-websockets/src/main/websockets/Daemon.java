@@ -0,0 +1,116 @@
+package websockets;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CountDownLatch;
+
+// Modo não interativo: sobe um peer a partir de um arquivo de configuração e registra os eventos em log
+// até receber SIGTERM/SIGINT. Uso: java websockets.Daemon daemon.properties
+public class Daemon {
+    private static final DateTimeFormatter LOG_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static class LogListener implements PeerListener {
+        private void log(String text) {
+            System.out.println("[" + LocalDateTime.now().format(LOG_TIME) + "] " + text);
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            log(message.toString());
+        }
+
+        @Override
+        public void onPeerConnected(String username, String address, boolean resumed) {
+            log("Conectado a " + username + "@" + address + (resumed ? " (sessão retomada)" : ""));
+        }
+
+        @Override
+        public void onPeerDisconnected(String username, String address, boolean graceful) {
+            log((graceful ? "Desconectado de " : "Conexão perdida com ") + username + "@" + address);
+        }
+
+        @Override
+        public void onPeerDiscovered(String username, String address) {
+            log("Peer descoberto: " + username + " em " + address);
+        }
+
+        @Override
+        public void onNotice(String text) {
+            log(text);
+        }
+
+        @Override
+        public void onError(String text, Throwable cause) {
+            log("ERRO " + text + (cause != null && cause.getMessage() != null ? ": " + cause.getMessage() : ""));
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Uso: java websockets.Daemon [ARQUIVO_DE_CONFIGURAÇÃO]");
+            return;
+        }
+
+        PeerConfig config;
+        try {
+            config = PeerConfig.load(Paths.get(args[0]));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao ler configuração " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Peer peer = new Peer(config.getPort(), config.getUsername(), config.getHistoryFile());
+        peer.addListener(new LogListener());
+        peer.getTraceCollector().setSampleRate(config.getTraceSampleRate());
+        peer.setCompressionEnabled(config.isCompressionEnabled());
+        if (config.getRelayWorkers() > 0) {
+            peer.setRelayWorkers(config.getRelayWorkers());
+        }
+        if (config.getBatchWindowMs() >= 0) {
+            peer.setBatching(Math.round(config.getBatchWindowMs() * 1000), config.getBatchMaxMessages());
+        }
+        if (!peer.start(config.isDiscoveryEnabled())) {
+            System.err.println("Erro ao iniciar o peer na porta " + config.getPort());
+            System.exit(1);
+            return;
+        }
+
+        try {
+            if (config.getMetricsHttpPort() > 0) {
+                peer.startMetricsHttp(config.getMetricsHttpHost(), config.getMetricsHttpPort());
+            }
+            if (config.getMetricsFile() != null) {
+                peer.exportMetricsToFile(Paths.get(config.getMetricsFile()));
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao exportar métricas: " + e.getMessage());
+        }
+
+        for (String address : config.getConnectTo()) {
+            int separator = address.lastIndexOf(':');
+            peer.connect(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)))
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            System.err.println("Erro ao conectar com " + address + ": " + cause.getMessage());
+                        }
+                    });
+        }
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            peer.stop();
+            stopped.countDown();
+        }, "daemon-shutdown"));
+
+        System.out.println("Peer " + config.getUsername() + " rodando na porta " + config.getPort());
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package websockets;
+
+import java.io.Serializable;
+
+public class Frame implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final Message message;
+
+    public Frame(long sequence, Message message) {
+        this.sequence = sequence;
+        this.message = message;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
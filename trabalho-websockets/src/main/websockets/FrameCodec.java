@@ -0,0 +1,61 @@
+package websockets;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public interface FrameCodec {
+    String BINARY = "binary";
+    String JAVA = "java";
+
+    // Ordem de preferência usada na negociação do handshake
+    List<String> SUPPORTED = Arrays.asList(BINARY, JAVA);
+
+    int MAX_BATCH_FRAMES = 0xFFFF;
+
+    String getName();
+
+    // Com batching negociado, os frames vão juntos em um único frame de lote; sem ele, um a um com um só flush
+    void write(List<Frame> frames) throws IOException;
+
+    default void write(Frame frame) throws IOException {
+        write(Collections.singletonList(frame));
+    }
+
+    // Retorna os frames de um lote, ou um único frame quando não há batching
+    List<Frame> read() throws IOException;
+
+    // Libera o que o codec guarda fora do heap; chamado ao fechar a conexão, de qualquer thread
+    default void close() {
+    }
+
+    static FrameCodec create(Handshake negotiated, DataInputStream in, DataOutputStream out) throws IOException {
+        return create(negotiated.getCodec(), in, out, negotiated.getFeatures(), negotiated.getCompression());
+    }
+
+    static FrameCodec create(String name, DataInputStream in, DataOutputStream out, Set<String> features,
+                             String compression) throws IOException {
+        boolean batching = features.contains(Handshake.FEATURE_BATCH);
+        switch (name) {
+            case BINARY:
+                PayloadCompressor compressor = null;
+                if (Handshake.COMPRESSION_DEFLATE.equals(compression)) {
+                    compressor = new PayloadCompressor(PayloadCompressor.DEFAULT_THRESHOLD_BYTES);
+                } else if (!Handshake.COMPRESSION_NONE.equals(compression)) {
+                    throw new IOException("Compressão não suportada: " + compression);
+                }
+                return new BinaryFrameCodec(in, out, batching, compressor, features.contains(Handshake.FEATURE_SYMBOLS));
+            case JAVA:
+                if (!Handshake.COMPRESSION_NONE.equals(compression)) {
+                    throw new IOException("Compressão não suportada pelo codec java: " + compression);
+                }
+                return new ObjectStreamFrameCodec(in, out, batching);
+            default:
+                throw new IOException("Codec não suportado: " + name);
+        }
+    }
+}
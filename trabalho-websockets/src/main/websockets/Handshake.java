@@ -0,0 +1,166 @@
+package websockets;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+public class Handshake {
+    public static final int MAGIC = 0x50325043; // "P2PC"
+    public static final int PROTOCOL_VERSION = 1;
+    public static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    public static final String COMPRESSION_NONE = "none";
+    public static final String COMPRESSION_DEFLATE = "deflate";
+    // Ordem de preferência; "deflate" só é aplicado com o codec binário
+    public static final List<String> SUPPORTED_COMPRESSIONS = Arrays.asList(COMPRESSION_DEFLATE, COMPRESSION_NONE);
+
+    public static final String FEATURE_RESUME = "resume";
+    public static final String FEATURE_BATCH = "batch";
+    public static final String FEATURE_SYMBOLS = "symbols";
+    public static final Set<String> SUPPORTED_FEATURES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(FEATURE_RESUME, FEATURE_BATCH, FEATURE_SYMBOLS)));
+
+    private final int version;
+    private final String username;
+    private final List<String> codecs;
+    private final List<String> compressions;
+    private final Set<String> features;
+    private final String sessionToken;
+    private final long lastReceivedSequence;
+    private final boolean resumed;
+
+    public Handshake(int version, String username, List<String> codecs, List<String> compressions,
+                     Set<String> features, String sessionToken, long lastReceivedSequence, boolean resumed) {
+        this.version = version;
+        this.username = username;
+        this.codecs = codecs;
+        this.compressions = compressions;
+        this.features = features;
+        this.sessionToken = sessionToken != null ? sessionToken : "";
+        this.lastReceivedSequence = lastReceivedSequence;
+        this.resumed = resumed;
+    }
+
+    // Proposta enviada por quem inicia a conexão, com tudo o que este nó suporta
+    public static Handshake hello(String username, Session session) {
+        return hello(username, session, SUPPORTED_COMPRESSIONS);
+    }
+
+    public static Handshake hello(String username, Session session, List<String> compressions) {
+        return new Handshake(PROTOCOL_VERSION, username, FrameCodec.SUPPORTED, compressions,
+                SUPPORTED_FEATURES, session != null ? session.getToken() : "",
+                session != null ? session.getLastReceivedSequence() : 0, false);
+    }
+
+    // Resposta de quem aceita a conexão, com uma única escolha para cada item negociado
+    public static Handshake welcome(String username, Handshake hello, Session session, boolean resumed) throws IOException {
+        return welcome(username, hello, session, resumed, SUPPORTED_COMPRESSIONS);
+    }
+
+    public static Handshake welcome(String username, Handshake hello, Session session, boolean resumed,
+                                    List<String> compressions) throws IOException {
+        String codec = choose(FrameCodec.SUPPORTED, hello.codecs, "codec");
+        String compression = FrameCodec.BINARY.equals(codec)
+                ? choose(compressions, hello.compressions, "compressão")
+                : choose(Collections.singletonList(COMPRESSION_NONE), hello.compressions, "compressão");
+        Set<String> features = new HashSet<>(SUPPORTED_FEATURES);
+        features.retainAll(hello.features);
+        return new Handshake(PROTOCOL_VERSION, username, Collections.singletonList(codec),
+                Collections.singletonList(compression), features, session.getToken(),
+                session.getLastReceivedSequence(), resumed);
+    }
+
+    private static String choose(List<String> preferred, List<String> offered, String what) throws IOException {
+        for (String candidate : preferred) {
+            if (offered.contains(candidate)) {
+                return candidate;
+            }
+        }
+        throw new IOException("Nenhum(a) " + what + " em comum: " + offered);
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(version);
+        out.writeUTF(username);
+        writeList(out, codecs);
+        writeList(out, compressions);
+        writeList(out, new ArrayList<>(features));
+        out.writeUTF(sessionToken);
+        out.writeLong(lastReceivedSequence);
+        out.writeBoolean(resumed);
+        out.flush();
+    }
+
+    public static Handshake readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Handshake inválido");
+        }
+        int version = in.readUnsignedShort();
+        if (version != PROTOCOL_VERSION) {
+            throw new IOException("Versão de protocolo incompatível: " + version);
+        }
+        String username = in.readUTF();
+        List<String> codecs = readList(in);
+        List<String> compressions = readList(in);
+        Set<String> features = new HashSet<>(readList(in));
+        String sessionToken = in.readUTF();
+        long lastReceivedSequence = in.readLong();
+        boolean resumed = in.readBoolean();
+        return new Handshake(version, username, codecs, compressions, features,
+                sessionToken, lastReceivedSequence, resumed);
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeByte(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readUnsignedByte();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getCodec() {
+        return codecs.get(0);
+    }
+
+    public String getCompression() {
+        return compressions.get(0);
+    }
+
+    public Set<String> getFeatures() {
+        return features;
+    }
+
+    public boolean hasFeature(String feature) {
+        return features.contains(feature);
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public long getLastReceivedSequence() {
+        return lastReceivedSequence;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+}
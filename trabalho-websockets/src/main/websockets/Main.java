@@ -1,9 +1,14 @@
 package websockets;
 
+import java.io.IOException;
 import java.net.*;
+import java.nio.file.Paths;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class Main {
     private static Peer peer;
@@ -36,6 +41,7 @@ public class Main {
         }
 
         peer = new Peer(port, username);
+        peer.addListener(new ConsoleListener());
         if (!peer.start()) {
             System.out.println("Erro ao iniciar o peer na porta " + port);
             return;
@@ -75,8 +81,8 @@ public class Main {
                 break;
             case "-connect":
                 if (parts.length == 2) {
-                    peer.connectToPeer(parts[1], 0);
                     System.out.println("Tentando conectar ao peer " + parts[1] + "...");
+                    awaitConnection(peer.connect(parts[1]), parts[1]);
                 } else if (parts.length == 3) {
                     connectToPeer(parts[1], parts[2]);
                 } else {
@@ -84,14 +90,17 @@ public class Main {
                 }
                 break;
             case "-list":
-                peer.listConnections();
+                listConnections();
                 break;
             case "-send":
                 if (parts.length < 2) {
                     System.out.println("Uso: -send [mensagem]");
                 } else {
                     String message = input.substring(input.indexOf(' ') + 1);
-                    peer.broadcastMessage(message);
+                    peer.send(message).exceptionally(error -> {
+                        System.out.println(rootCause(error).getMessage());
+                        return null;
+                    });
                 }
                 break;
             case "-ip":
@@ -107,11 +116,23 @@ public class Main {
                 peer.listChatHistoryFiles();
                 break;
             case "-load":
-                peer.loadChatHistory("history.txt");
+                peer.loadChatHistory(peer.getChatFileName());
                 break;
             case "-current":
                 System.out.println("Arquivo de chat atual: " + peer.getChatFileName());
                 break;
+            case "-stats":
+                handleStats(parts);
+                break;
+            case "-trace":
+                handleTrace(parts);
+                break;
+            case "-batch":
+                handleBatch(parts);
+                break;
+            case "-compress":
+                handleCompress(parts);
+                break;
             default:
                 System.out.println("Comando inválido. Digite -help para ver os comandos disponíveis");
         }
@@ -130,23 +151,158 @@ public class Main {
         System.out.println("-files                    - Mostra informações do arquivo de histórico");
         System.out.println("-load                     - Carrega e exibe o histórico completo");
         System.out.println("-current                  - Mostra o arquivo de chat atual");
+        System.out.println("-stats                    - Mostra as métricas deste peer");
+        System.out.println("-stats export [ARQUIVO]   - Exporta as métricas (formato Prometheus) para um arquivo a cada 10s");
+        System.out.println("-stats http [PORT]        - Expõe as métricas (formato Prometheus) em http://host:PORT/metrics");
+        System.out.println("-trace                    - Mostra a latência de propagação por origem (mensagens rastreadas)");
+        System.out.println("-trace rate [0..1]        - Define a fração das mensagens enviadas que são rastreadas");
+        System.out.println("-trace slow [N]           - Mostra os N caminhos recentes mais lentos pela malha");
+        System.out.println("-batch                    - Mostra a configuração de agrupamento (batching) de saída");
+        System.out.println("-batch [MS] [N]           - Agrupa em um lote as mensagens de até MS ms ou N mensagens");
+        System.out.println("-batch off                - Desativa o agrupamento (cada mensagem vai em um frame)");
+        System.out.println("-compress [on|off]        - Mostra ou altera a compressão deflate do conteúdo das mensagens");
         System.out.println("exit/quit                 - Encerra o programa");
         System.out.println("============================\n");
     }
 
-    private static void connectToPeer(String host, String portStr) {
+    private static void handleStats(String[] parts) {
+        if (parts.length == 1) {
+            peer.printStats();
+            return;
+        }
+
         try {
-            int port = Integer.parseInt(portStr);
-            if (peer.connectToPeer(host, port)) {
-                System.out.println("Conectado com sucesso ao peer " + host + ":" + port);
+            if (parts[1].equals("export")) {
+                String file = parts.length > 2 ? parts[2] : "metrics.prom";
+                peer.exportMetricsToFile(Paths.get(file));
+                System.out.println("Métricas exportadas para " + file);
+            } else if (parts[1].equals("http") && parts.length == 3) {
+                int port = Integer.parseInt(parts[2]);
+                peer.startMetricsHttp(port);
+                System.out.println("Métricas disponíveis em http://localhost:" + port + "/metrics");
             } else {
-                System.out.println("Falha ao conectar com o peer " + host + ":" + port);
+                System.out.println("Uso: -stats, -stats export [ARQUIVO] ou -stats http [PORT]");
             }
+        } catch (NumberFormatException e) {
+            System.out.println("Porta inválida: " + parts[2]);
+        } catch (IOException e) {
+            System.out.println("Erro ao exportar métricas: " + e.getMessage());
+        }
+    }
+
+    private static void handleTrace(String[] parts) {
+        TraceCollector traces = peer.getTraceCollector();
+        if (parts.length == 1) {
+            System.out.println("\n=== Rastreamento (amostragem: " + traces.getSampleRate() + ") ===");
+            Map<String, LatencyHistogram> byOrigin = traces.getPropagationByOrigin();
+            if (byOrigin.isEmpty()) {
+                System.out.println("Nenhuma mensagem rastreada recebida.");
+            }
+            for (Map.Entry<String, LatencyHistogram> entry : byOrigin.entrySet()) {
+                LatencyHistogram h = entry.getValue();
+                System.out.println(String.format("%s: n=%d p50=%.3fms p99=%.3fms máx=%.3fms", entry.getKey(),
+                        h.getCount(), h.valueAtPercentile(50) / 1e6, h.valueAtPercentile(99) / 1e6, h.getMaxNanos() / 1e6));
+            }
+            System.out.println("============================\n");
+            return;
+        }
+
+        try {
+            if (parts[1].equals("rate") && parts.length == 3) {
+                traces.setSampleRate(Double.parseDouble(parts[2]));
+                System.out.println("Taxa de amostragem definida para " + traces.getSampleRate());
+            } else if (parts[1].equals("slow")) {
+                int limit = parts.length > 2 ? Integer.parseInt(parts[2]) : 10;
+                System.out.println("\n=== Caminhos Mais Lentos ===");
+                for (TraceCollector.TracedPath path : traces.slowestRecentPaths(limit)) {
+                    System.out.println(path.describe());
+                }
+                System.out.println("============================\n");
+            } else {
+                System.out.println("Uso: -trace, -trace rate [0..1] ou -trace slow [N]");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Valor inválido: " + e.getMessage());
+        }
+    }
+
+    private static void handleBatch(String[] parts) {
+        if (parts.length == 1) {
+            if (peer.isBatching()) {
+                System.out.println("Batching ativo: janela de " + peer.getBatchWindowMicros() / 1000.0
+                        + "ms, até " + peer.getBatchMaxMessages() + " mensagens por lote");
+            } else {
+                System.out.println("Batching desativado");
+            }
+            return;
+        }
+
+        if (parts[1].equals("off")) {
+            peer.disableBatching();
+            System.out.println("Batching desativado para novas conexões");
+            return;
+        }
+        try {
+            long windowMicros = Math.round(Double.parseDouble(parts[1]) * 1000);
+            int maxMessages = parts.length > 2 ? Integer.parseInt(parts[2]) : 64;
+            peer.setBatching(windowMicros, maxMessages);
+            System.out.println("Batching ativo para novas conexões: janela de " + parts[1] + "ms, até "
+                    + maxMessages + " mensagens por lote");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Uso: -batch, -batch [MS] [N] ou -batch off (" + e.getMessage() + ")");
+        }
+    }
+
+    private static void handleCompress(String[] parts) {
+        if (parts.length == 1) {
+            System.out.println("Compressão " + (peer.isCompressionEnabled() ? "ativa" : "desativada"));
+        } else if (parts[1].equals("on") || parts[1].equals("off")) {
+            peer.setCompressionEnabled(parts[1].equals("on"));
+            System.out.println("Compressão " + (peer.isCompressionEnabled() ? "ativada" : "desativada") + " para novas conexões");
+        } else {
+            System.out.println("Uso: -compress [on|off]");
+        }
+    }
+
+    private static void connectToPeer(String host, String portStr) {
+        try {
+            int port = Integer.parseInt(portStr);
+            awaitConnection(peer.connect(host, port), host + ":" + port);
         } catch (NumberFormatException e) {
             System.out.println("Porta inválida: " + portStr);
         }
     }
 
+    private static void awaitConnection(CompletableFuture<Void> connection, String target) {
+        try {
+            connection.join();
+            System.out.println("Conectado com sucesso ao peer " + target);
+        } catch (CompletionException e) {
+            System.out.println("Falha ao conectar com o peer " + target + ": " + rootCause(e).getMessage());
+        }
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static void listConnections() {
+        List<ConnectionInfo> connections = peer.getConnections();
+        if (connections.isEmpty()) {
+            System.out.println("Nenhuma conexão ativa");
+            return;
+        }
+
+        System.out.println("\n=== Conexões Ativas ===");
+        int i = 1;
+        for (ConnectionInfo connection : connections) {
+            System.out.println(i + ". " + connection +
+                " (status: " + (connection.isConnected() ? "conectado" : "desconectado") + ")");
+            i++;
+        }
+        System.out.println("=======================\n");
+    }
+
     private static void listDiscoveredPeers() {
         Map<String, String> discoveredPeers = peer.getDiscoveredPeers();
         if (discoveredPeers.isEmpty()) {
@@ -0,0 +1,697 @@
+package websockets;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Sobe N peers em portas de loopback no mesmo processo, liga-os em uma topologia e gera carga,
+// sem o loop interativo do Main. Uso: java websockets.MeshSimulator --nodes 8 --topology ring --rate 200
+public class MeshSimulator {
+    enum Topology { FULL, RING, LINE, STAR, RANDOM }
+
+    private static class Tracked {
+        private final long sentNanos;
+        private final int expected;
+        // Nós alcançáveis a partir do remetente no momento do envio, sem o próprio remetente
+        private final boolean[] recipients;
+        private final Set<Integer> deliveredTo = ConcurrentHashMap.newKeySet();
+        // Destinatários derrubados antes de receber: saíram da malha, não é perda
+        private final AtomicInteger excused = new AtomicInteger();
+
+        private Tracked(long sentNanos, boolean[] recipients) {
+            this.sentNanos = sentNanos;
+            this.recipients = recipients;
+            int count = 0;
+            for (boolean recipient : recipients) {
+                if (recipient) {
+                    count++;
+                }
+            }
+            this.expected = count;
+        }
+    }
+
+    private static class Fault {
+        private final String description;
+        private final long atMillis;
+        private final Runnable action;
+
+        private Fault(String description, long atMillis, Runnable action) {
+            this.description = description;
+            this.atMillis = atMillis;
+            this.action = action;
+        }
+    }
+
+    private int nodeCount = 5;
+    private Topology topology = Topology.RING;
+    private int degree = 3;
+    private double rate = 100;
+    private int durationSeconds = 10;
+    private int drainSeconds = 2;
+    private int basePort = 9100;
+    private int payloadBytes = 32;
+    private long seed = 42;
+    private double batchWindowMs = -1;
+    private int batchMaxMessages = 64;
+    private boolean compression = true;
+    private int relayWorkers = 0;
+    private double minCompleteness = -1;
+    private final List<String> killSpecs = new ArrayList<>();
+    private final List<String> stopSpecs = new ArrayList<>();
+    private final List<String> partitionSpecs = new ArrayList<>();
+
+    private final List<Peer> peers = new ArrayList<>();
+    private final List<int[]> edges = new ArrayList<>();
+    private final Map<Integer, LinkProxy> proxies = new HashMap<>();
+    private final List<Fault> faults = new ArrayList<>();
+    private final List<String> faultLog = new CopyOnWriteArrayList<>();
+    private boolean[] alive;
+    private Set<Integer> partitionedGroup;
+
+    private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder deliveries = new LongAdder();
+    private long sent;
+    private Random random;
+    private PrintStream console;
+    private Path workDir;
+
+    public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--help")) {
+            printUsage();
+            return;
+        }
+
+        MeshSimulator simulator = new MeshSimulator();
+        try {
+            simulator.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+            printUsage();
+            return;
+        }
+
+        boolean passed = false;
+        try {
+            passed = simulator.run();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Erro na simulação: " + e.getMessage());
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void printUsage() {
+        System.out.println("Uso: java websockets.MeshSimulator [opções]");
+        System.out.println("  --nodes N                  Número de peers (padrão 5)");
+        System.out.println("  --topology T               full, ring, line, star ou random (padrão ring)");
+        System.out.println("  --degree K                 Vizinhos por nó na topologia random (padrão 3)");
+        System.out.println("  --rate R                   Mensagens por segundo somando todos os nós (padrão 100)");
+        System.out.println("  --duration S               Duração da carga em segundos (padrão 10)");
+        System.out.println("  --drain S                  Espera após a carga antes de medir (padrão 2)");
+        System.out.println("  --payload B                Tamanho do conteúdo em bytes (padrão 32)");
+        System.out.println("  --base-port P              Primeira porta usada (padrão 9100)");
+        System.out.println("  --seed X                   Semente para topologia e escolha de remetentes");
+        System.out.println("  --relay-workers W          Workers de relay por nó (padrão: um por núcleo)");
+        System.out.println("  --compression on|off       Compressão deflate do conteúdo (padrão on)");
+        System.out.println("  --batch MS[:N]             Agrupa a saída em lotes de até MS ms ou N mensagens (padrão N=64)");
+        System.out.println("  --kill N@S                 Derruba o nó N após S segundos de carga, sem despedida (repetível)");
+        System.out.println("  --stop N@S                 Encerra o nó N normalmente após S segundos de carga (repetível)");
+        System.out.println("  --partition A-B@S[:E]      Isola os nós A..B do resto entre S e E segundos (repetível)");
+        System.out.println("  --min-completeness P       Sai com código 1 se a completude ficar abaixo de P%");
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Valor ausente para " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--nodes":
+                        nodeCount = Integer.parseInt(value);
+                        break;
+                    case "--topology":
+                        topology = Topology.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--degree":
+                        degree = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        rate = Double.parseDouble(value);
+                        break;
+                    case "--duration":
+                        durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "--drain":
+                        drainSeconds = Integer.parseInt(value);
+                        break;
+                    case "--payload":
+                        payloadBytes = Integer.parseInt(value);
+                        break;
+                    case "--base-port":
+                        basePort = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--relay-workers":
+                        relayWorkers = Integer.parseInt(value);
+                        break;
+                    case "--compression":
+                        if (!value.equals("on") && !value.equals("off")) {
+                            throw new IllegalArgumentException("Valor inválido para --compression: " + value);
+                        }
+                        compression = value.equals("on");
+                        break;
+                    case "--batch":
+                        String[] batch = value.split(":");
+                        batchWindowMs = Double.parseDouble(batch[0]);
+                        if (batch.length > 1) {
+                            batchMaxMessages = Integer.parseInt(batch[1]);
+                        }
+                        break;
+                    case "--kill":
+                        killSpecs.add(value);
+                        break;
+                    case "--stop":
+                        stopSpecs.add(value);
+                        break;
+                    case "--partition":
+                        partitionSpecs.add(value);
+                        break;
+                    case "--min-completeness":
+                        minCompleteness = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opção desconhecida: " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor inválido para " + option + ": " + value);
+            }
+        }
+        if (nodeCount < 2) {
+            throw new IllegalArgumentException("São necessários pelo menos 2 nós");
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("A taxa deve ser positiva");
+        }
+        if (relayWorkers < 0) {
+            throw new IllegalArgumentException("Número de workers inválido: " + relayWorkers);
+        }
+        if (batchWindowMs >= 0 && (batchMaxMessages < 1 || batchMaxMessages > FrameCodec.MAX_BATCH_FRAMES)) {
+            throw new IllegalArgumentException("Tamanho de lote inválido: " + batchMaxMessages);
+        }
+        try {
+            parseFaults();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Falha mal formatada: " + e.getMessage());
+        }
+    }
+
+    // Retorna false se a completude ficou abaixo de --min-completeness
+    private boolean run() throws IOException, InterruptedException {
+        random = new Random(seed);
+        alive = new boolean[nodeCount];
+        workDir = Files.createTempDirectory("mesh-sim");
+
+        // O ChatHistory de cada nó ainda anuncia seu arquivo no console; o relatório usa o stream original
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        try {
+            startPeers();
+            buildTopology();
+            connectPeers();
+            Thread.sleep(500);
+
+            console.println("Simulando " + nodeCount + " nós (" + topology.name().toLowerCase(Locale.ROOT) + ", "
+                    + edges.size() + " ligações) a " + rate + " msg/s por " + durationSeconds + "s...");
+            long elapsedNanos = generateLoad();
+            Thread.sleep(drainSeconds * 1000L);
+            double completeness = printReport(elapsedNanos);
+            if (completeness < minCompleteness) {
+                console.println(String.format(Locale.ROOT, "FALHOU: completude %.2f%% abaixo do mínimo de %.2f%%",
+                        completeness, minCompleteness));
+                return false;
+            }
+            return true;
+        } finally {
+            shutdown();
+            System.setOut(console);
+        }
+    }
+
+    private void startPeers() throws IOException {
+        for (int i = 0; i < nodeCount; i++) {
+            Peer peer = new Peer(basePort + i, "node" + i, workDir.resolve("node" + i + ".txt").toString());
+            peer.setCompressionEnabled(compression);
+            if (relayWorkers > 0) {
+                peer.setRelayWorkers(relayWorkers);
+            }
+            if (batchWindowMs >= 0) {
+                peer.setBatching(Math.round(batchWindowMs * 1000), batchMaxMessages);
+            }
+            int node = i;
+            peer.addListener(new PeerListener() {
+                @Override
+                public void onMessage(Message message) {
+                    onDelivered(node, message);
+                }
+            });
+            if (!peer.start(false)) {
+                throw new IOException("Não foi possível iniciar o nó " + i + " na porta " + (basePort + i));
+            }
+            peers.add(peer);
+            alive[i] = true;
+        }
+    }
+
+    private void buildTopology() {
+        Set<Long> seen = new HashSet<>();
+        switch (topology) {
+            case FULL:
+                for (int i = 0; i < nodeCount; i++) {
+                    for (int j = i + 1; j < nodeCount; j++) {
+                        addEdge(i, j, seen);
+                    }
+                }
+                break;
+            case RING:
+                for (int i = 0; i < nodeCount; i++) {
+                    addEdge(i, (i + 1) % nodeCount, seen);
+                }
+                break;
+            case LINE:
+                for (int i = 0; i + 1 < nodeCount; i++) {
+                    addEdge(i, i + 1, seen);
+                }
+                break;
+            case STAR:
+                for (int i = 1; i < nodeCount; i++) {
+                    addEdge(0, i, seen);
+                }
+                break;
+            case RANDOM:
+                // Um anel garante que o grafo é conexo; o restante das ligações é sorteado
+                for (int i = 0; i < nodeCount; i++) {
+                    addEdge(i, (i + 1) % nodeCount, seen);
+                }
+                int target = Math.min(nodeCount * degree / 2, nodeCount * (nodeCount - 1) / 2);
+                while (edges.size() < target) {
+                    addEdge(random.nextInt(nodeCount), random.nextInt(nodeCount), seen);
+                }
+                break;
+        }
+    }
+
+    private void addEdge(int a, int b, Set<Long> seen) {
+        if (a == b) {
+            return;
+        }
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        if (seen.add((long) low * nodeCount + high)) {
+            edges.add(new int[]{low, high});
+        }
+    }
+
+    private void connectPeers() throws IOException {
+        // Com partições, cada ligação passa por um proxy que o simulador pode cortar
+        boolean useProxies = !partitionSpecs.isEmpty();
+        for (int e = 0; e < edges.size(); e++) {
+            int[] edge = edges.get(e);
+            int targetPort = basePort + edge[1];
+            if (useProxies) {
+                LinkProxy proxy = new LinkProxy(basePort + nodeCount + e, targetPort);
+                proxy.start();
+                proxies.put(e, proxy);
+                targetPort = proxy.getPort();
+            }
+            peers.get(edge[0]).connectToPeer("127.0.0.1", targetPort);
+        }
+    }
+
+    private void parseFaults() {
+        for (String spec : killSpecs) {
+            String[] parts = spec.split("@");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Formato inválido para --kill: " + spec);
+            }
+            int node = Integer.parseInt(parts[0]);
+            checkNode(node);
+            faults.add(new Fault("nó " + node + " derrubado", seconds(parts[1]), () -> kill(node, false)));
+        }
+
+        for (String spec : stopSpecs) {
+            String[] parts = spec.split("@");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Formato inválido para --stop: " + spec);
+            }
+            int node = Integer.parseInt(parts[0]);
+            checkNode(node);
+            faults.add(new Fault("nó " + node + " encerrado", seconds(parts[1]), () -> kill(node, true)));
+        }
+
+        for (String spec : partitionSpecs) {
+            String[] parts = spec.split("@");
+            String[] range = parts[0].split("-");
+            if (parts.length != 2 || range.length != 2) {
+                throw new IllegalArgumentException("Formato inválido para --partition: " + spec);
+            }
+            int first = Integer.parseInt(range[0]);
+            int last = Integer.parseInt(range[1]);
+            checkNode(first);
+            checkNode(last);
+            Set<Integer> group = new HashSet<>();
+            for (int i = first; i <= last; i++) {
+                group.add(i);
+            }
+            String[] window = parts[1].split(":");
+            String description = "nós " + first + ".." + last;
+            faults.add(new Fault(description + " isolados", seconds(window[0]), () -> partition(group)));
+            if (window.length > 1) {
+                faults.add(new Fault(description + " reintegrados", seconds(window[1]), this::heal));
+            }
+        }
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IllegalArgumentException("Nó inexistente: " + node);
+        }
+    }
+
+    private static long seconds(String value) {
+        return (long) (Double.parseDouble(value) * 1000);
+    }
+
+    private long generateLoad() {
+        ScheduledExecutorService faultScheduler = Executors.newSingleThreadScheduledExecutor();
+        for (Fault fault : faults) {
+            faultScheduler.schedule(() -> {
+                faultLog.add(String.format("t=%.1fs: %s", fault.atMillis / 1000.0, fault.description));
+                fault.action.run();
+            }, fault.atMillis, TimeUnit.MILLISECONDS);
+        }
+
+        String padding = "x".repeat(Math.max(0, payloadBytes));
+        long interval = (long) (1_000_000_000L / rate);
+        long start = System.nanoTime();
+        long end = start + durationSeconds * 1_000_000_000L;
+        long next = start;
+
+        while (System.nanoTime() < end) {
+            int sender;
+            boolean[] recipients = null;
+            synchronized (this) {
+                sender = pickLiveNode();
+                if (sender >= 0) {
+                    recipients = reachableFrom(sender);
+                    recipients[sender] = false;
+                }
+            }
+            if (sender >= 0) {
+                long seq = ++sent;
+                tracked.put(seq, new Tracked(System.nanoTime(), recipients));
+                peers.get(sender).send("sim:" + seq + ":" + padding);
+            }
+
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        faultScheduler.shutdownNow();
+        return System.nanoTime() - start;
+    }
+
+    private int pickLiveNode() {
+        int candidate = random.nextInt(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            int node = (candidate + i) % nodeCount;
+            if (alive[node]) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    private boolean linkUp(int a, int b) {
+        if (!alive[a] || !alive[b]) {
+            return false;
+        }
+        return partitionedGroup == null || partitionedGroup.contains(a) == partitionedGroup.contains(b);
+    }
+
+    private boolean[] reachableFrom(int source) {
+        boolean[] visited = new boolean[nodeCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        visited[source] = true;
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int[] edge : edges) {
+                int other = edge[0] == node ? edge[1] : edge[1] == node ? edge[0] : -1;
+                if (other >= 0 && !visited[other] && linkUp(node, other)) {
+                    visited[other] = true;
+                    queue.add(other);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private void onDelivered(int node, Message message) {
+        String content = message.getContent();
+        if (!content.startsWith("sim:")) {
+            return;
+        }
+        long seq = Long.parseLong(content.substring(4, content.indexOf(':', 4)));
+        Tracked entry = tracked.get(seq);
+        if (entry != null) {
+            latency.recordSince(entry.sentNanos);
+            if (entry.recipients[node]) {
+                entry.deliveredTo.add(node);
+            }
+            deliveries.increment();
+        }
+    }
+
+    // graceful: saída normal, com despedida aos vizinhos; senão o nó cai como um processo morto
+    private void kill(int node, boolean graceful) {
+        synchronized (this) {
+            if (!alive[node]) {
+                return;
+            }
+            alive[node] = false;
+        }
+        if (graceful) {
+            peers.get(node).stop();
+        } else {
+            peers.get(node).abort();
+        }
+        for (Tracked entry : tracked.values()) {
+            if (entry.recipients[node] && !entry.deliveredTo.contains(node)) {
+                entry.excused.incrementAndGet();
+            }
+        }
+    }
+
+    private void partition(Set<Integer> group) {
+        synchronized (this) {
+            partitionedGroup = group;
+        }
+        for (Map.Entry<Integer, LinkProxy> entry : proxies.entrySet()) {
+            int[] edge = edges.get(entry.getKey());
+            if (group.contains(edge[0]) != group.contains(edge[1])) {
+                entry.getValue().setBlocked(true);
+            }
+        }
+    }
+
+    private void heal() {
+        synchronized (this) {
+            partitionedGroup = null;
+        }
+        for (Map.Entry<Integer, LinkProxy> entry : proxies.entrySet()) {
+            LinkProxy proxy = entry.getValue();
+            if (proxy.isBlocked()) {
+                proxy.setBlocked(false);
+                // A reconexão automática pode ter desistido durante a partição
+                int[] edge = edges.get(entry.getKey());
+                if (alive[edge[0]] && alive[edge[1]]) {
+                    peers.get(edge[0]).connectToPeer("127.0.0.1", proxy.getPort());
+                }
+            }
+        }
+    }
+
+    private double printReport(long elapsedNanos) {
+        long expected = 0;
+        long completed = 0;
+        for (Tracked entry : tracked.values()) {
+            int owed = Math.max(0, entry.expected - entry.excused.get());
+            expected += owed;
+            completed += Math.min(entry.deliveredTo.size(), owed);
+        }
+
+        long received = 0;
+        long duplicates = 0;
+        long bytesOut = 0;
+        for (Peer peer : peers) {
+            received += peer.getMetrics().sum("p2p_messages_in_total");
+            duplicates += peer.getMetrics().sum("p2p_messages_deduped_total");
+            bytesOut += peer.getMetrics().sum("p2p_bytes_out_total");
+        }
+
+        double elapsedSeconds = elapsedNanos / 1e9;
+        console.println("\n=== Resultado da Simulação ===");
+        console.println(String.format(Locale.ROOT, "Mensagens enviadas: %d (%.1f msg/s)", sent, sent / elapsedSeconds));
+        double completeness = expected == 0 ? 100.0 : completed * 100.0 / expected;
+        console.println(String.format(Locale.ROOT, "Entregas: %d de %d esperadas (completude %.2f%%)",
+                completed, expected, completeness));
+        console.println(String.format(Locale.ROOT, "Vazão de entrega: %.1f entregas/s", deliveries.sum() / elapsedSeconds));
+        console.println(String.format(Locale.ROOT, "Duplicatas: %d de %d frames recebidos (%.2f%%)",
+                duplicates, received, received == 0 ? 0.0 : duplicates * 100.0 / received));
+        console.println(String.format(Locale.ROOT, "Bytes no fio: %d (%.1f por frame recebido)",
+                bytesOut, received == 0 ? 0.0 : (double) bytesOut / received));
+        console.println(String.format(Locale.ROOT, "Latência ponta a ponta: p50=%.3fms p99=%.3fms p99.9=%.3fms máx=%.3fms",
+                latency.valueAtPercentile(50) / 1e6, latency.valueAtPercentile(99) / 1e6,
+                latency.valueAtPercentile(99.9) / 1e6, latency.getMaxNanos() / 1e6));
+        if (!faultLog.isEmpty()) {
+            console.println("Falhas injetadas:");
+            for (String entry : faultLog) {
+                console.println("  " + entry);
+            }
+        }
+        console.println("==============================\n");
+        return completeness;
+    }
+
+    private void shutdown() {
+        ExecutorService stopper = Executors.newCachedThreadPool();
+        for (int i = 0; i < peers.size(); i++) {
+            if (alive[i]) {
+                Peer peer = peers.get(i);
+                stopper.submit(peer::stop);
+            }
+        }
+        stopper.shutdown();
+        try {
+            stopper.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (LinkProxy proxy : proxies.values()) {
+            proxy.close();
+        }
+
+        try (var paths = Files.walk(workDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Erro ao remover " + workDir + ": " + e.getMessage());
+        }
+    }
+
+    // Encaminha uma ligação TCP; quando bloqueado, derruba as conexões ativas e recusa novas
+    private static class LinkProxy {
+        private final ServerSocket serverSocket;
+        private final int targetPort;
+        private final List<Socket> openSockets = new CopyOnWriteArrayList<>();
+        private volatile boolean blocked;
+
+        private LinkProxy(int port, int targetPort) throws IOException {
+            this.serverSocket = new ServerSocket(port);
+            this.targetPort = targetPort;
+        }
+
+        private void start() {
+            daemon(() -> {
+                while (!serverSocket.isClosed()) {
+                    Socket client = null;
+                    try {
+                        client = serverSocket.accept();
+                        if (blocked) {
+                            client.close();
+                            continue;
+                        }
+                        Socket upstream = new Socket("127.0.0.1", targetPort);
+                        client.setTcpNoDelay(true);
+                        upstream.setTcpNoDelay(true);
+                        openSockets.add(client);
+                        openSockets.add(upstream);
+                        pump(client, upstream);
+                        pump(upstream, client);
+                    } catch (IOException e) {
+                        // Proxy fechado ou destino fora do ar; a conexão do cliente cai e ele tenta de novo
+                        if (client != null) {
+                            closeQuietly(client);
+                        }
+                    }
+                }
+            });
+        }
+
+        private void pump(Socket from, Socket to) {
+            daemon(() -> {
+                try {
+                    from.getInputStream().transferTo(to.getOutputStream());
+                } catch (IOException e) {
+                    // Conexão cortada
+                }
+                closeQuietly(from);
+                closeQuietly(to);
+            });
+        }
+
+        private void setBlocked(boolean blocked) {
+            this.blocked = blocked;
+            if (blocked) {
+                for (Socket socket : openSockets) {
+                    closeQuietly(socket);
+                }
+                openSockets.clear();
+            }
+        }
+
+        private boolean isBlocked() {
+            return blocked;
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void close() {
+            setBlocked(true);
+            closeQuietly(serverSocket);
+        }
+
+        private static void daemon(Runnable task) {
+            Thread thread = new Thread(task, "link-proxy");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Já fechado
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package websockets;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public class Message implements Serializable {
@@ -16,6 +17,9 @@ public class Message implements Serializable {
     private final String content;
     private final long timestamp;
     private final MessageType type;
+    private Trace trace;
+    // UTF-8 do conteúdo, calculado uma vez e reaproveitado no repasse para cada conexão
+    private transient byte[] contentBytes;
 
     public Message(String senderUsername, String content, MessageType type) {
         this.id = UUID.randomUUID();
@@ -25,6 +29,14 @@ public class Message implements Serializable {
         this.type = type;
     }
 
+    Message(UUID id, String senderUsername, String content, long timestamp, MessageType type) {
+        this.id = id;
+        this.senderUsername = senderUsername;
+        this.content = content;
+        this.timestamp = timestamp;
+        this.type = type;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -45,6 +57,23 @@ public class Message implements Serializable {
         return type;
     }
 
+    public Trace getTrace() {
+        return trace;
+    }
+
+    void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    byte[] getContentBytes() {
+        byte[] bytes = contentBytes;
+        if (bytes == null) {
+            bytes = content.getBytes(StandardCharsets.UTF_8);
+            contentBytes = bytes;
+        }
+        return bytes;
+    }
+
     @Override
     public String toString() {
         return "[" + senderUsername + "]: " + content;
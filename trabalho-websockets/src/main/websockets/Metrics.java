@@ -0,0 +1,167 @@
+package websockets;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class Metrics {
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static class Family {
+        private final Type type;
+        private final String help;
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    // As instâncias retornadas devem ser guardadas por quem instrumenta, evitando consultas ao mapa no caminho quente
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, Type.COUNTER, help).series
+                .computeIfAbsent(formatLabels(labels), key -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, Type.SUMMARY, help).series
+                .computeIfAbsent(formatLabels(labels), key -> new LatencyHistogram());
+    }
+
+    public void gauge(String name, String help, LongSupplier supplier, String... labels) {
+        family(name, Type.GAUGE, help).series.put(formatLabels(labels), supplier);
+    }
+
+    public void removeGauge(String name, String... labels) {
+        Family family = families.get(name);
+        if (family != null) {
+            family.series.remove(formatLabels(labels));
+        }
+    }
+
+    // Soma todas as séries de um contador, independente dos labels
+    public long sum(String name) {
+        Family family = families.get(name);
+        if (family == null || family.type != Type.COUNTER) {
+            return 0;
+        }
+        long total = 0;
+        for (Object metric : family.series.values()) {
+            total += ((LongAdder) metric).sum();
+        }
+        return total;
+    }
+
+    private Family family(String name, Type type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Métrica " + name + " já registrada como " + family.type);
+        }
+        return family;
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels devem ser pares chave/valor");
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String withLabel(String labels, String extra) {
+        if (labels.isEmpty()) {
+            return "{" + extra + "}";
+        }
+        return labels.substring(0, labels.length() - 1) + "," + extra + "}";
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                switch (family.type) {
+                    case COUNTER:
+                        sb.append(name).append(labels).append(' ').append(((LongAdder) metric).sum()).append('\n');
+                        break;
+                    case GAUGE:
+                        sb.append(name).append(labels).append(' ').append(((LongSupplier) metric).getAsLong()).append('\n');
+                        break;
+                    case SUMMARY:
+                        LatencyHistogram histogram = (LatencyHistogram) metric;
+                        for (double quantile : QUANTILES) {
+                            sb.append(name).append(withLabel(labels, "quantile=\"" + quantile + "\"")).append(' ')
+                                    .append(seconds(histogram.valueAtPercentile(quantile * 100))).append('\n');
+                        }
+                        sb.append(name).append("_sum").append(labels).append(' ')
+                                .append(seconds(histogram.getSumNanos())).append('\n');
+                        sb.append(name).append("_count").append(labels).append(' ')
+                                .append(histogram.getCount()).append('\n');
+                        break;
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public void printSummary() {
+        System.out.println("\n=== Métricas ===");
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            for (Map.Entry<String, Object> series : entry.getValue().series.entrySet()) {
+                String key = entry.getKey() + series.getKey();
+                Object metric = series.getValue();
+                switch (entry.getValue().type) {
+                    case COUNTER:
+                        System.out.println(key + " = " + ((LongAdder) metric).sum());
+                        break;
+                    case GAUGE:
+                        System.out.println(key + " = " + ((LongSupplier) metric).getAsLong());
+                        break;
+                    case SUMMARY:
+                        LatencyHistogram h = (LatencyHistogram) metric;
+                        if (h.getCount() == 0) {
+                            System.out.println(key + " = sem amostras");
+                        } else {
+                            System.out.println(String.format(Locale.ROOT,
+                                    "%s n=%d média=%.1fµs p50=%.1fµs p99=%.1fµs máx=%.1fµs", key, h.getCount(),
+                                    h.getMeanNanos() / 1e3, h.valueAtPercentile(50) / 1e3,
+                                    h.valueAtPercentile(99) / 1e3, h.getMaxNanos() / 1e3));
+                        }
+                        break;
+                }
+            }
+        }
+        System.out.println("================\n");
+    }
+}
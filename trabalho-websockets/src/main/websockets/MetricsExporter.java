@@ -0,0 +1,81 @@
+package websockets;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsExporter {
+    private static final int FILE_EXPORT_INTERVAL = 10;
+    // Só a própria máquina enxerga as métricas, a menos que outro endereço seja pedido
+    public static final String DEFAULT_HTTP_HOST = "127.0.0.1";
+
+    private final Metrics metrics;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-exporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> fileExport;
+    private HttpServer httpServer;
+
+    public MetricsExporter(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void writeToFile(Path file) throws IOException {
+        // Escreve em arquivo temporário e renomeia para que o coletor nunca leia um arquivo pela metade
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, metrics.toPrometheus().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Substitui a exportação anterior, para que exportar de novo não acumule tarefas periódicas
+    public synchronized void startFileExport(Path file) {
+        if (fileExport != null) {
+            fileExport.cancel(false);
+        }
+        fileExport = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                writeToFile(file);
+            } catch (IOException e) {
+                System.err.println("Erro ao exportar métricas para " + file + ": " + e.getMessage());
+            }
+        }, 0, FILE_EXPORT_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    public void startHttp(int port) throws IOException {
+        startHttp(DEFAULT_HTTP_HOST, port);
+    }
+
+    public synchronized void startHttp(String host, int port) throws IOException {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+    }
+
+    public synchronized void stop() {
+        scheduler.shutdownNow();
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package websockets;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ObjectStreamFrameCodec implements FrameCodec {
+    private final ObjectOutputStream oos;
+    private final ObjectInputStream ois;
+    private final boolean batching;
+
+    public ObjectStreamFrameCodec(InputStream in, OutputStream out, boolean batching) throws IOException {
+        this.batching = batching;
+        // Os dois lados escrevem o cabeçalho antes de ler o do outro para evitar deadlock
+        this.oos = new ObjectOutputStream(out);
+        this.oos.flush();
+        this.ois = new ObjectInputStream(in);
+    }
+
+    @Override
+    public String getName() {
+        return JAVA;
+    }
+
+    @Override
+    public void write(List<Frame> frames) throws IOException {
+        if (batching) {
+            oos.writeObject(frames.toArray(new Frame[0]));
+        } else {
+            for (Frame frame : frames) {
+                oos.writeObject(frame);
+            }
+        }
+        oos.flush();
+    }
+
+    @Override
+    public List<Frame> read() throws IOException {
+        try {
+            if (batching) {
+                return Arrays.asList((Frame[]) ois.readObject());
+            }
+            return Collections.singletonList((Frame) ois.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Frame inválido: " + e.getMessage(), e);
+        }
+    }
+}
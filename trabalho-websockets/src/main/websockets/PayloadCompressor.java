@@ -0,0 +1,110 @@
+package websockets;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compressão deflate do conteúdo das mensagens de uma conexão. O Deflater e o Inflater não são
+// reiniciados entre frames (SYNC_FLUSH), então frases e nomes repetidos em mensagens anteriores
+// viram referências curtas à janela de 32KB que os dois lados mantêm.
+// Cada metade tem um só usuário (a escrita sob o writeLock da conexão, a leitura na thread leitora), mas o
+// close() pode vir de qualquer thread, então cada metade é travada para não ser encerrada no meio do uso.
+public class PayloadCompressor {
+    // Abaixo disso o cabeçalho do bloco deflate costuma custar mais do que economiza
+    public static final int DEFAULT_THRESHOLD_BYTES = 32;
+
+    // Em mensagens de chat o ganho vem das repetições entre frames; níveis maiores custam CPU sem reduzir o tamanho
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final Inflater inflater = new Inflater(true);
+    private final int thresholdBytes;
+    private byte[] buffer = new byte[1024];
+    private final byte[] overflow = new byte[1];
+    private byte[] inflated = new byte[1024];
+    private boolean closed = false;
+
+    public PayloadCompressor(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public boolean shouldCompress(int length) {
+        return length >= thresholdBytes;
+    }
+
+    // Retorna o tamanho comprimido; os bytes ficam em getBuffer() até a próxima chamada
+    public int compress(byte[] raw) throws IOException {
+        synchronized (deflater) {
+            if (closed) {
+                throw new IOException("Compressor encerrado");
+            }
+            deflater.setInput(raw);
+            int length = 0;
+            while (true) {
+                length += deflater.deflate(buffer, length, buffer.length - length, Deflater.SYNC_FLUSH);
+                if (length < buffer.length) {
+                    return length;
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    // Os rawLength primeiros bytes do retorno valem até a próxima chamada
+    public byte[] decompress(byte[] compressed, int compressedLength, int rawLength) throws IOException {
+        synchronized (inflater) {
+            if (closed) {
+                throw new IOException("Compressor encerrado");
+            }
+            return inflate(compressed, compressedLength, rawLength);
+        }
+    }
+
+    private byte[] inflate(byte[] compressed, int compressedLength, int rawLength) throws IOException {
+        inflater.setInput(compressed, 0, compressedLength);
+        if (rawLength > inflated.length) {
+            inflated = new byte[Math.max(rawLength, inflated.length * 2)];
+        }
+        byte[] raw = inflated;
+        int length = 0;
+        try {
+            // Consome também o marcador do SYNC_FLUSH; sobras de entrada dessincronizariam o próximo frame
+            while (inflater.getRemaining() > 0) {
+                int remainingBefore = inflater.getRemaining();
+                int n = length < rawLength
+                        ? inflater.inflate(raw, length, rawLength - length)
+                        : inflater.inflate(overflow);
+                if (length == rawLength && n > 0) {
+                    throw new IOException("Conteúdo comprimido maior que o tamanho anunciado: " + rawLength);
+                }
+                length += n;
+                if (n == 0 && inflater.getRemaining() == remainingBefore) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Conteúdo comprimido inválido", e);
+        }
+        if (length != rawLength || inflater.getRemaining() > 0) {
+            throw new IOException("Conteúdo comprimido com tamanho inesperado: " + length + " de " + rawLength);
+        }
+        return raw;
+    }
+
+    // Libera a memória nativa do zlib; pode ser chamado mais de uma vez
+    public void close() {
+        synchronized (deflater) {
+            synchronized (inflater) {
+                closed = true;
+            }
+            deflater.end();
+        }
+        synchronized (inflater) {
+            inflater.end();
+        }
+    }
+}
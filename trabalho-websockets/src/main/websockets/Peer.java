@@ -1,47 +1,215 @@
 package websockets;
 import java.io.*;
 import java.net.*;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
-public class Peer {
+public class Peer implements PeerNode {
     private final int port;
     private final String username;
     private ServerSocket serverSocket;
-    private boolean running = false;
+    private volatile boolean running = false;
     private final Set<PeerConnection> connections;
+    // Conexões que caíram com retomada possível: seguem numerando na sessão o que seria enviado
+    private final Set<PeerConnection> detachedConnections;
     private final ExecutorService threadPool;
     private final Set<UUID> processedMessages;
     private PeerDiscovery peerDiscovery;
     private final ChatHistory chatHistory;
+    private final Map<String, Session> sessions;
+    private final Map<String, Session> outboundSessions;
+    private final Metrics metrics;
+    private final MetricsExporter metricsExporter;
+    private final LatencyHistogram relayLatency;
+    private final LatencyHistogram frameWriteLatency;
+    private final LatencyHistogram frameReadLatency;
+    private final LongAdder messagesOriginated;
+    private final TraceCollector traceCollector;
+    private final List<PeerListener> listeners;
+    private final PriorityLaneQueue<Runnable> events;
+    private volatile boolean eventsClosed = false;
+    private final ExecutorService sendExecutor;
+    private final LatencyHistogram relayQueueWait;
+    private volatile RelayPipeline relayPipeline;
+    private int relayWorkers = Runtime.getRuntime().availableProcessors();
+
+    public static final double DEFAULT_TRACE_SAMPLE_RATE = 0.01;
+
+    private static final int RECONNECT_ATTEMPTS = 3;
+    private static final long RECONNECT_INITIAL_DELAY_MS = 1000;
+
+    private static final int OUTBOUND_QUEUE_CAPACITY = 4096;
+    // Marcador na fila de saída: o escritor envia o que veio antes e fecha a conexão
+    private static final Message CLOSE_MARKER = new Message("", "", Message.MessageType.DISCONNECT);
+    private static final Runnable STOP_EVENTS = () -> { };
+
+    // Micro-batching de saída; batchMaxMessages == 0 desativa e cada mensagem é escrita direto no socket
+    private volatile long batchWindowNanos = 0;
+    private volatile int batchMaxMessages = 0;
+    private volatile List<String> compressions = Handshake.SUPPORTED_COMPRESSIONS;
 
     public Peer(int port, String username) {
+        this(port, username, ChatHistory.DEFAULT_FILE_NAME);
+    }
+
+    public Peer(int port, String username, String historyFile) {
         this.port = port;
         this.username = username;
-        this.connections = Collections.synchronizedSet(new HashSet<>());
+        // Lida a cada mensagem no fan-out e alterada só quando peers entram ou saem
+        this.connections = new CopyOnWriteArraySet<>();
+        this.detachedConnections = new CopyOnWriteArraySet<>();
         this.threadPool = Executors.newCachedThreadPool();
-        this.processedMessages = Collections.synchronizedSet(new HashSet<>());
-        
-        this.chatHistory = new ChatHistory(username, port);
+        this.processedMessages = ConcurrentHashMap.newKeySet();
+        this.sessions = new ConcurrentHashMap<>();
+        this.outboundSessions = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.events = new PriorityLaneQueue<>(Integer.MAX_VALUE);
+        daemonThreads("peer-events-" + username).newThread(this::dispatchEvents).start();
+        this.sendExecutor = Executors.newSingleThreadExecutor(daemonThreads("peer-send-" + username));
+
+        this.metrics = new Metrics();
+        this.metricsExporter = new MetricsExporter(metrics);
+        this.relayLatency = metrics.histogram("p2p_relay_latency_seconds",
+                "Tempo entre o recebimento de uma mensagem e o fim do repasse aos outros peers");
+        this.frameWriteLatency = metrics.histogram("p2p_frame_write_seconds",
+                "Tempo para serializar e escrever um frame (ou lote de frames) no socket");
+        this.frameReadLatency = metrics.histogram("p2p_frame_read_seconds",
+                "Tempo para desserializar um frame (ou lote de frames) já disponível no socket");
+        this.relayQueueWait = metrics.histogram("p2p_relay_queue_wait_seconds",
+                "Tempo que uma mensagem recebida espera na fila do worker de relay");
+        this.messagesOriginated = metrics.counter("p2p_messages_originated_total",
+                "Mensagens criadas por este peer");
+        metrics.gauge("p2p_connections", "Conexões ativas", connections::size);
+        metrics.gauge("p2p_processed_messages", "IDs de mensagens guardados para deduplicação", processedMessages::size);
+        metrics.gauge("p2p_sessions", "Sessões retomáveis guardadas por este peer", sessions::size);
+        metrics.gauge("p2p_detached_sessions", "Sessões sem conexão que seguem numerando frames até a retomada",
+                detachedConnections::size);
+
+        this.traceCollector = new TraceCollector(username, metrics, DEFAULT_TRACE_SAMPLE_RATE);
+
+        this.chatHistory = new ChatHistory(username, port, metrics, historyFile);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void addListener(PeerListener listener) {
+        listeners.add(listener);
     }
 
+    @Override
+    public void removeListener(PeerListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Os listeners rodam na thread de eventos, fora dos caminhos de leitura e relay
+    void fire(Consumer<PeerListener> event) {
+        fire(event, false);
+    }
+
+    // Avisos, erros e descobertas passam à frente das mensagens de chat ainda não entregues
+    void fireControl(Consumer<PeerListener> event) {
+        fire(event, true);
+    }
+
+    // Entrada e saída de um peer seguem pelo worker de relay desse remetente, atrás das mensagens
+    // dele que ainda estão sendo repassadas, para não chegarem aos listeners fora de ordem
+    private void firePeerEvent(String username, Consumer<PeerListener> event) {
+        RelayPipeline pipeline = relayPipeline;
+        if (pipeline == null || !pipeline.isRunning()) {
+            fire(event);
+            return;
+        }
+        try {
+            pipeline.submit(username, () -> fire(event));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fire(event);
+        }
+    }
+
+    private void fire(Consumer<PeerListener> event, boolean control) {
+        if (listeners.isEmpty() || eventsClosed) {
+            return;
+        }
+        Runnable dispatch = () -> {
+            for (PeerListener listener : listeners) {
+                try {
+                    event.accept(listener);
+                } catch (RuntimeException e) {
+                    // Um listener com defeito não deve impedir os demais de receberem o evento
+                }
+            }
+        };
+        if (control) {
+            events.putControl(dispatch);
+        } else {
+            try {
+                events.putData(dispatch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void dispatchEvents() {
+        try {
+            while (true) {
+                Runnable event = events.take();
+                if (event == STOP_EVENTS) {
+                    return;
+                }
+                event.run();
+            }
+        } catch (InterruptedException e) {
+            // Thread de eventos encerrada
+        }
+    }
+
+    void fireError(String text, Throwable cause) {
+        fireControl(listener -> listener.onError(text, cause));
+    }
+
+    void fireNotice(String text) {
+        fireControl(listener -> listener.onNotice(text));
+    }
+
+    @Override
     public boolean start() {
+        return start(true);
+    }
+
+    public boolean start(boolean discoveryEnabled) {
         try {
             serverSocket = new ServerSocket(port);
             running = true;
+
+            relayPipeline = new RelayPipeline(this, "peer-relay-" + username, relayWorkers, metrics);
+            relayPipeline.start();
             
             threadPool.submit(this::acceptConnections);
             
-            try {
-                peerDiscovery = new PeerDiscovery(this);
-                threadPool.submit(peerDiscovery);
-            } catch (IOException e) {
-                System.err.println("Erro ao iniciar a descoberta de peers: " + e.getMessage());
+            if (discoveryEnabled) {
+                try {
+                    peerDiscovery = new PeerDiscovery(this);
+                    threadPool.submit(peerDiscovery);
+                } catch (IOException e) {
+                    fireError("Erro ao iniciar a descoberta de peers", e);
+                }
             }
             
             return true;
         } catch (IOException e) {
-            System.err.println("Erro ao iniciar servidor na porta " + port + ": " + e.getMessage());
+            fireError("Erro ao iniciar servidor na porta " + port, e);
             return false;
         }
     }
@@ -50,76 +218,282 @@ public class Peer {
         while (running) {
             try {
                 Socket clientSocket = serverSocket.accept();
-                PeerConnection connection = new PeerConnection(clientSocket, this);
-                
-                String remoteAddress = clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort();
-                boolean connectionExists = false;
-                
-                synchronized (connections) {
-                    for (PeerConnection existingConnection : connections) {
-                        if (existingConnection.getRemoteAddress().equals(remoteAddress)) {
-                            connectionExists = true;
-                            break;
-                        }
-                    }
-                    
-                    if (!connectionExists) {
-                        connections.add(connection);
-                        threadPool.submit(connection);
-                        
-                        System.out.println("\nNova conexão aceita de: " + remoteAddress);
-                        System.out.print("> ");
-                    } else {
-                        System.out.println("\nConexão duplicada ignorada de: " + remoteAddress);
-                        System.out.print("> ");
-                        connection.close();
-                    }
-                }
+                // O handshake roda fora da thread de accept para que um cliente lento não bloqueie os demais
+                threadPool.submit(() -> acceptHandshake(clientSocket));
             } catch (IOException e) {
                 if (running) {
-                    System.err.println("Erro ao aceitar conexão: " + e.getMessage());
+                    fireError("Erro ao aceitar conexão", e);
                 }
             }
         }
     }
 
-    public boolean connectToPeer(String host, int port) {
-        if (port == 0 && peerDiscovery != null) {
-            Map<String, String> discoveredPeers = peerDiscovery.getDiscoveredPeers();
-            String address = discoveredPeers.get(host);
-            if (address != null) {
-                String[] parts = address.split(":");
-                host = parts[0];
-                port = Integer.parseInt(parts[1]);
-            } else {
-                System.err.println("Peer com nome de usuário '" + host + "' não encontrado.");
-                return false;
+    private void acceptHandshake(Socket clientSocket) {
+        PeerConnection connection = new PeerConnection(clientSocket, this, null);
+        String remoteAddress = connection.getRemoteAddress();
+        try {
+            connection.acceptHandshake();
+        } catch (IOException e) {
+            metrics.counter("p2p_handshakes_total", "Handshakes por resultado", "result", "failed").increment();
+            fireError("Handshake falhou com " + remoteAddress, e);
+            connection.close();
+            return;
+        }
+
+        boolean connectionExists = false;
+        synchronized (connections) {
+            for (PeerConnection existingConnection : connections) {
+                if (existingConnection.getRemoteAddress().equals(remoteAddress)) {
+                    connectionExists = true;
+                    break;
+                }
+            }
+
+            if (!connectionExists) {
+                connections.add(connection);
+            }
+        }
+
+        if (connectionExists) {
+            fireNotice("Conexão duplicada ignorada de: " + remoteAddress);
+            connection.close();
+        } else {
+            fireConnected(connection);
+            connection.startReplay();
+            connection.run();
+        }
+    }
+
+    // Uma sessão retomada fica com uma conexão só: a antiga (meio aberta, ou já caída e numerando à espera
+    // da retomada) continuaria numerando frames que a nova não reenviaria, abrindo buracos na sequência
+    private void takeOverSession(PeerConnection current) {
+        for (PeerConnection connection : connections) {
+            if (connection != current && connection.getSession() == current.getSession()) {
+                connection.close();
+                connections.remove(connection);
+                connection.awaitWrites();
+                connection.awaitWriter();
+            }
+        }
+        for (PeerConnection connection : detachedConnections) {
+            if (connection.getSession() == current.getSession()) {
+                connection.stopBuffering();
+                detachedConnections.remove(connection);
             }
         }
+    }
+
+    private boolean isResumable(Session session) {
+        return sessions.get(session.getToken()) == session || outboundSessions.containsValue(session);
+    }
+
+    // Retomada impossível (ou desistida): a sessão some de todos os lados, e a próxima conexão começa do zero
+    private void forgetSession(Session session) {
+        sessions.remove(session.getToken(), session);
+        outboundSessions.values().remove(session);
+        for (PeerConnection connection : detachedConnections) {
+            if (connection.getSession() == session) {
+                connection.stopBuffering();
+                detachedConnections.remove(connection);
+            }
+        }
+    }
+
+    Session resumeOrCreateSession(String token, String remoteUsername, long remoteAcknowledged) {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.isExpired(now));
+        for (PeerConnection connection : detachedConnections) {
+            if (connection.getSession().isExpired(now)) {
+                forgetSession(connection.getSession());
+            }
+        }
+
+        Session session = sessions.get(token);
+        if (session != null && session.getRemoteUsername().equals(remoteUsername)) {
+            if (session.canReplayAfter(remoteAcknowledged)) {
+                session.touch();
+                return session;
+            }
+            metrics.counter("p2p_handshakes_total", "Handshakes por resultado", "result", "resume_refused").increment();
+            fireNotice("Sessão com " + remoteUsername + " não pode ser retomada: mensagens não confirmadas "
+                    + "já saíram do buffer de reenvio e podem ter sido perdidas");
+        }
+        // Sessões antigas do mesmo peer que ainda esperavam retomada não voltam mais
+        for (PeerConnection connection : detachedConnections) {
+            if (connection.getSession().getRemoteUsername().equals(remoteUsername)) {
+                forgetSession(connection.getSession());
+            }
+        }
+        if (session != null) {
+            forgetSession(session);
+        }
+        session = new Session(remoteUsername);
+        sessions.put(session.getToken(), session);
+        return session;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect(String host, int port) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                openConnection(host, port);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, threadPool);
+    }
 
+    @Override
+    public CompletableFuture<Void> connect(String username) {
+        String address = getDiscoveredPeers().get(username);
+        if (address == null) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Peer com nome de usuário '" + username + "' não encontrado."));
+        }
+        String[] parts = address.split(":");
+        return connect(parts[0], Integer.parseInt(parts[1]));
+    }
+
+    // Versão síncrona usada pela reconexão automática e pelo simulador; erros vão para os listeners
+    public boolean connectToPeer(String host, int port) {
+        try {
+            openConnection(host, port);
+            return true;
+        } catch (IOException e) {
+            fireError("Erro ao conectar com " + host + ":" + port, e);
+            return false;
+        }
+    }
+
+    private void openConnection(String host, int port) throws IOException {
         // Check if we already have a connection to this address
         String targetAddress = host + ":" + port;
         synchronized (connections) {
             for (PeerConnection existingConnection : connections) {
                 if (existingConnection.getRemoteAddress().equals(targetAddress)) {
-                    System.out.println("Já existe uma conexão com " + targetAddress);
-                    return true;
+                    fireNotice("Já existe uma conexão com " + targetAddress);
+                    return;
                 }
             }
         }
 
+        if (!connectSocket(new Socket(host, port), targetAddress)) {
+            // Retomada recusada: a sessão foi descartada e a nova tentativa começa uma do zero
+            connectSocket(new Socket(host, port), targetAddress);
+        }
+    }
+
+    // Faz o handshake como iniciador sobre um socket já aberto e registra a conexão.
+    // Retorna false quando a sessão anterior não pôde ser retomada; ela é descartada antes do retorno.
+    boolean connectSocket(Socket socket, String targetAddress) throws IOException {
+        PeerConnection connection = new PeerConnection(socket, this, targetAddress);
+        Session previousSession = outboundSessions.get(targetAddress);
         try {
-            Socket socket = new Socket(host, port);
-            PeerConnection connection = new PeerConnection(socket, this);
-            connections.add(connection);
-            threadPool.submit(connection);
-            return true;
+            connection.initiateHandshake(previousSession);
         } catch (IOException e) {
-            System.err.println("Erro ao conectar com " + host + ":" + port + " - " + e.getMessage());
-            return false;
+            connection.close();
+            if (connection.isResumeRefused()) {
+                metrics.counter("p2p_handshakes_total", "Handshakes por resultado", "result", "resume_refused").increment();
+                fireNotice("Sessão com " + targetAddress + " não pode ser retomada: mensagens não confirmadas "
+                        + "já saíram do buffer de reenvio e podem ter sido perdidas");
+                forgetSession(previousSession);
+                return false;
+            }
+            throw e;
         }
+        outboundSessions.put(targetAddress, connection.getSession());
+        connections.add(connection);
+        fireConnected(connection);
+        connection.startReplay();
+        threadPool.submit(connection);
+        return true;
     }
 
+    private void fireConnected(PeerConnection connection) {
+        String remoteUsername = connection.getRemoteUsername();
+        String remoteAddress = connection.getRemoteAddress();
+        boolean resumed = connection.isResumed();
+        firePeerEvent(remoteUsername, listener -> listener.onPeerConnected(remoteUsername, remoteAddress, resumed));
+    }
+
+    private void scheduleReconnect(String targetAddress) {
+        String[] parts = targetAddress.split(":");
+        threadPool.submit(() -> {
+            long delay = RECONNECT_INITIAL_DELAY_MS;
+            for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS && running; attempt++) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) {
+                    return;
+                }
+                fireNotice("Tentando reconectar a " + targetAddress + " (tentativa " + attempt + ")...");
+                metrics.counter("p2p_reconnect_attempts_total", "Tentativas de reconexão automática").increment();
+                if (connectToPeer(parts[0], Integer.parseInt(parts[1]))) {
+                    return;
+                }
+                delay *= 2;
+            }
+            Session abandoned = outboundSessions.get(targetAddress);
+            if (abandoned != null) {
+                forgetSession(abandoned);
+            }
+        });
+    }
+
+    // Agrupa as mensagens de saída de cada conexão em um único frame de lote: o lote é escrito quando
+    // chega a maxMessages ou quando a janela expira. Janela 0 só junta o que já estiver na fila.
+    // Vale para as conexões abertas depois da chamada.
+    public void setBatching(long windowMicros, int maxMessages) {
+        if (windowMicros < 0 || maxMessages < 1 || maxMessages > FrameCodec.MAX_BATCH_FRAMES) {
+            throw new IllegalArgumentException("Janela deve ser >= 0 e o lote entre 1 e " + FrameCodec.MAX_BATCH_FRAMES);
+        }
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.batchMaxMessages = maxMessages;
+    }
+
+    public void disableBatching() {
+        this.batchMaxMessages = 0;
+    }
+
+    public boolean isBatching() {
+        return batchMaxMessages > 0;
+    }
+
+    public long getBatchWindowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(batchWindowNanos);
+    }
+
+    public int getBatchMaxMessages() {
+        return batchMaxMessages;
+    }
+
+    // Número de workers do relay (dedup, histórico e fan-out); precisa ser definido antes de start()
+    public void setRelayWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("O relay precisa de pelo menos 1 worker");
+        }
+        this.relayWorkers = workers;
+    }
+
+    public int getRelayWorkers() {
+        return relayWorkers;
+    }
+
+    // Compressão deflate do conteúdo, negociada no handshake; desativar só faz sentido em links rápidos
+    // onde a CPU pesa mais que os bytes. Vale para as conexões abertas depois da chamada.
+    public void setCompressionEnabled(boolean enabled) {
+        this.compressions = enabled ? Handshake.SUPPORTED_COMPRESSIONS
+                : Collections.singletonList(Handshake.COMPRESSION_NONE);
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressions.contains(Handshake.COMPRESSION_DEFLATE);
+    }
+
+    @Override
     public Map<String, String> getDiscoveredPeers() {
         if (peerDiscovery != null) {
             return peerDiscovery.getDiscoveredPeers();
@@ -127,37 +501,45 @@ public class Peer {
         return Collections.emptyMap();
     }
     
-    public void broadcastMessage(String content) {
-        if (connections.isEmpty()) {
-            System.out.println("Nenhuma conexão ativa para enviar mensagem");
-            return;
+    @Override
+    public CompletableFuture<Message> send(String content) {
+        // Uma única thread de envio mantém a ordem das mensagens de um mesmo cliente
+        return CompletableFuture.supplyAsync(() -> broadcastMessage(content), sendExecutor);
+    }
+
+    public Message broadcastMessage(String content) {
+        if (connections.isEmpty() && detachedConnections.isEmpty()) {
+            throw new IllegalStateException("Nenhuma conexão ativa para enviar mensagem");
         }
 
         Message message = new Message(username, content, Message.MessageType.TEXT);
         processedMessages.add(message.getId()); 
+        messagesOriginated.increment();
+        traceCollector.maybeStart(message);
 
-        System.out.println("Enviando: " + message);
+        fire(listener -> listener.onMessageSent(message));
         String messageText = "Eu: " + content;
         chatHistory.addMessage(messageText);
         
-        synchronized (connections) {
-            for (PeerConnection connection : connections) {
-                connection.sendMessage(message);
-            }
+        for (PeerConnection connection : connections) {
+            connection.sendMessage(message);
+        }
+        for (PeerConnection connection : detachedConnections) {
+            connection.sendMessage(message);
         }
+        return message;
     }
     
-    public void relayMessage(Message message) {
-        if (processedMessages.contains(message.getId())) {
-            return;
+    // Retorna false quando a mensagem já foi processada antes (duplicata)
+    public boolean relayMessage(Message message) {
+        long start = System.nanoTime();
+        if (!processedMessages.add(message.getId())) {
+            return false;
         }
-    
-        processedMessages.add(message.getId());
 
         if (message.getType() == Message.MessageType.DISCONNECT) {
             String disconnectMsg = "Usuário " + message.getSenderUsername() + " desconectado.";
             chatHistory.addMessage(disconnectMsg);
-            System.out.println("\n" + disconnectMsg);
 
             PeerConnection connectionToRemove = null;
             synchronized (connections) {
@@ -172,52 +554,69 @@ public class Peer {
                     connections.remove(connectionToRemove);
                 }
             }
+            if (connectionToRemove != null) {
+                String remoteAddress = connectionToRemove.getRemoteAddress();
+                fire(listener -> listener.onPeerDisconnected(message.getSenderUsername(), remoteAddress, true));
+            }
         } else {
-            String messageText = message.toString();
-            chatHistory.addMessage(messageText);
-            System.out.println("\n" + messageText);
+            chatHistory.addMessage(message);
+            fire(listener -> listener.onMessage(message));
         }
 
-        System.out.print("> ");
-    
-        synchronized (connections) {
-            for (PeerConnection connection : connections) {
-                if (!connection.getRemoteUsername().equals(message.getSenderUsername())) {
-                    connection.sendMessage(message);
-                }
+        traceCollector.onDelivered(message);
+
+        // Os destinos são levantados antes do envio: o carimbo de repasse vai dentro do frame, então precisa
+        // existir antes da escrita, e só é marcado quando há pelo menos um destino
+        List<PeerConnection> targets = new ArrayList<>();
+        for (PeerConnection connection : connections) {
+            if (!connection.getRemoteUsername().equals(message.getSenderUsername())) {
+                targets.add(connection);
+            }
+        }
+        List<PeerConnection> detachedTargets = new ArrayList<>();
+        for (PeerConnection connection : detachedConnections) {
+            if (!connection.getRemoteUsername().equals(message.getSenderUsername())) {
+                detachedTargets.add(connection);
             }
         }
+        if (!targets.isEmpty() || !detachedTargets.isEmpty()) {
+            traceCollector.onForwarded(message);
+        }
+        for (PeerConnection connection : targets) {
+            connection.sendMessage(message);
+            connection.messagesRelayed.increment();
+        }
+        for (PeerConnection connection : detachedTargets) {
+            connection.sendMessage(message);
+        }
+        relayLatency.recordSince(start);
+        return true;
     }
 
-    public void listConnections() {
-        if (connections.isEmpty()) {
-            System.out.println("Nenhuma conexão ativa");
-        } else {
-            System.out.println("\n=== Conexões Ativas ===");
-            int i = 1;
-            Set<String> uniqueConnections = new HashSet<>();
-            
-            synchronized (connections) {
-                for (PeerConnection connection : connections) {
-                    String connectionKey = connection.getRemoteUsername() + "@" + connection.getRemoteAddress();
-                    
-                    // Only show unique connections
-                    if (!uniqueConnections.contains(connectionKey)) {
-                        uniqueConnections.add(connectionKey);
-                        System.out.println(i + ". " + connectionKey + 
-                            " (status: " + (connection.isConnected() ? "conectado" : "desconectado") + ")");
-                        i++;
-                    }
+    @Override
+    public List<ConnectionInfo> getConnections() {
+        List<ConnectionInfo> result = new ArrayList<>();
+        Set<String> uniqueConnections = new HashSet<>();
+        synchronized (connections) {
+            for (PeerConnection connection : connections) {
+                String connectionKey = connection.getRemoteUsername() + "@" + connection.getRemoteAddress();
+                
+                // Only show unique connections
+                if (uniqueConnections.add(connectionKey)) {
+                    result.add(new ConnectionInfo(connection.getRemoteUsername(), connection.getRemoteAddress(),
+                            connection.isConnected(), connection.isResumed()));
                 }
             }
-            System.out.println("=======================\n");
         }
+        return result;
     }
 
+    @Override
     public int getPort() {
         return port;
     }
 
+    @Override
     public String getUsername() {
         return username;
     }
@@ -226,6 +625,32 @@ public class Peer {
         return chatHistory.getChatFileName();
     }
 
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public TraceCollector getTraceCollector() {
+        return traceCollector;
+    }
+
+    public void printStats() {
+        metrics.printSummary();
+    }
+
+    public void exportMetricsToFile(Path file) throws IOException {
+        metricsExporter.writeToFile(file);
+        metricsExporter.startFileExport(file);
+    }
+
+    public void startMetricsHttp(int port) throws IOException {
+        metricsExporter.startHttp(port);
+    }
+
+    public void startMetricsHttp(String host, int port) throws IOException {
+        metricsExporter.startHttp(host, port);
+    }
+
     public static String[] readUserInfoFromHistory() {
         return ChatHistory.readUserInfoFromHistory();
     }
@@ -242,30 +667,49 @@ public class Peer {
         chatHistory.listChatHistoryFiles();
     }
 
+    @Override
     public void stop() {
+        shutdown(true);
+    }
+
+    // Queda abrupta, como um processo morto: fecha sockets e servidor sem despedida nem envio do que estava na fila
+    void abort() {
+        shutdown(false);
+    }
+
+    private void shutdown(boolean graceful) {
         running = false;
 
         if (peerDiscovery != null) {
             peerDiscovery.stop();
         }
+        metricsExporter.stop();
         
         Message disconnectMessage = new Message(username, "desconectando", Message.MessageType.DISCONNECT);
         synchronized (connections) {
             for (PeerConnection connection : connections) {
-                connection.sendMessage(disconnectMessage);
-                connection.close();
+                if (graceful) {
+                    connection.finish(disconnectMessage);
+                } else {
+                    connection.close();
+                }
             }
             connections.clear();
         }
+        detachedConnections.clear();
 
         if (serverSocket != null && !serverSocket.isClosed()) {
             try {
                 serverSocket.close();
             } catch (IOException e) {
-                System.err.println("Erro ao fechar servidor: " + e.getMessage());
+                fireError("Erro ao fechar servidor", e);
             }
         }
 
+        if (relayPipeline != null) {
+            relayPipeline.stop();
+        }
+        sendExecutor.shutdown();
         threadPool.shutdown();
         try {
             if (!threadPool.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -274,40 +718,227 @@ public class Peer {
         } catch (InterruptedException e) {
             threadPool.shutdownNow();
         }
+        chatHistory.close();
+        // Eventos já enfileirados ainda são entregues
+        eventsClosed = true;
+        try {
+            events.putData(STOP_EVENTS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private class PeerConnection implements Runnable {
-        private Socket socket;
-        private ObjectInputStream ois;
-        private ObjectOutputStream oos;
-        private boolean connected = true;
+        private final Socket socket;
+        private final Peer owner;
+        private final String targetAddress;
+        private final String remoteAddress;
+        private final Object writeLock = new Object();
+        private DataInputStream in;
+        private DataOutputStream out;
+        private FrameCodec codec;
+        private Session session;
+        private volatile boolean connected = true;
+        private volatile boolean gracefulDisconnect = false;
+        // Falha de escrita na thread escritora: o close() dela zera connected antes de a leitora perceber
+        private volatile boolean writeFailed = false;
+        // Liberado quando o reenvio da retomada termina; escritas novas esperam para não passar à frente dele
+        private CountDownLatch replayed = new CountDownLatch(0);
+        private long replayFrom;
+        private boolean resumed = false;
+        private boolean resumeRefused = false;
+        // Caiu com retomada possível: o que seria enviado é numerado na sessão, sem escrever, até alguém assumi-la
+        private volatile boolean detached = false;
         private String remoteUsername;
-        private Peer owner;
+        private LongAdder messagesIn;
+        private LongAdder messagesOut;
+        private LongAdder messagesRelayed;
+        private LongAdder messagesDeduped;
+        private LongAdder batchesOut;
+        private volatile LongAdder bytesIn;
+        private volatile LongAdder bytesOut;
+        private PriorityLaneQueue<Message> outbound;
+        private long windowNanos;
+        private int maxBatch;
+        // Com batching: liberado quando o escritor termina e já numerou o que sobrou na fila
+        private final CountDownLatch writerDone = new CountDownLatch(1);
+        private boolean writerFinished = false;
 
-        public PeerConnection(Socket socket, Peer owner) {
+        public PeerConnection(Socket socket, Peer owner, String targetAddress) {
             this.socket = socket;
             this.owner = owner;
-            
+            this.targetAddress = targetAddress;
+            this.remoteAddress = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        }
+
+        private void openStreams() throws IOException {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(Handshake.HANDSHAKE_TIMEOUT_MS);
+            // Contam os bytes que realmente passam pelo socket, depois do codec e da compressão
+            InputStream socketIn = new FilterInputStream(socket.getInputStream()) {
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    LongAdder counter = bytesIn;
+                    if (n > 0 && counter != null) {
+                        counter.add(n);
+                    }
+                    return n;
+                }
+            };
+            OutputStream socketOut = new FilterOutputStream(socket.getOutputStream()) {
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    super.out.write(buffer, offset, length);
+                    LongAdder counter = bytesOut;
+                    if (counter != null) {
+                        counter.add(length);
+                    }
+                }
+            };
+            this.in = new DataInputStream(new BufferedInputStream(socketIn));
+            this.out = new DataOutputStream(new BufferedOutputStream(socketOut));
+        }
+
+        public void initiateHandshake(Session previousSession) throws IOException {
+            openStreams();
+            Handshake.hello(owner.getUsername(), previousSession, compressions).writeTo(out);
+            Handshake welcome = Handshake.readFrom(in);
+
+            this.remoteUsername = welcome.getUsername();
+            this.resumed = welcome.isResumed() && previousSession != null
+                    && previousSession.getToken().equals(welcome.getSessionToken());
+            if (resumed && !previousSession.canReplayAfter(welcome.getLastReceivedSequence())) {
+                resumeRefused = true;
+                throw new IOException("Sessão com " + remoteUsername + " não pode ser retomada");
+            }
+            this.session = resumed ? previousSession : new Session(welcome.getSessionToken(), remoteUsername);
+            completeHandshake(welcome, welcome.getLastReceivedSequence());
+        }
+
+        public void acceptHandshake() throws IOException {
+            openStreams();
+            Handshake hello = Handshake.readFrom(in);
+
+            this.remoteUsername = hello.getUsername();
+            String requestedToken = hello.hasFeature(Handshake.FEATURE_RESUME) ? hello.getSessionToken() : "";
+            this.session = owner.resumeOrCreateSession(requestedToken, remoteUsername, hello.getLastReceivedSequence());
+            this.resumed = session.getToken().equals(requestedToken);
+            Handshake welcome = Handshake.welcome(owner.getUsername(), hello, session, resumed, compressions);
+            welcome.writeTo(out);
+            completeHandshake(welcome, hello.getLastReceivedSequence());
+        }
+
+        private void completeHandshake(Handshake negotiated, long remoteAcknowledged) throws IOException {
+            this.codec = FrameCodec.create(negotiated, in, out);
+            socket.setSoTimeout(0);
+
+            this.messagesIn = metrics.counter("p2p_messages_in_total", "Mensagens recebidas por conexão", "peer", remoteUsername);
+            this.messagesOut = metrics.counter("p2p_messages_out_total", "Mensagens enviadas por conexão", "peer", remoteUsername);
+            this.messagesRelayed = metrics.counter("p2p_messages_relayed_total",
+                    "Mensagens de terceiros repassadas por conexão", "peer", remoteUsername);
+            this.messagesDeduped = metrics.counter("p2p_messages_deduped_total",
+                    "Mensagens recebidas descartadas como duplicatas por conexão", "peer", remoteUsername);
+            metrics.gauge("p2p_replay_buffer_frames", "Frames guardados para reenvio na retomada de sessão",
+                    session::getBufferedFrameCount, "peer", remoteUsername);
+            metrics.counter("p2p_handshakes_total", "Handshakes por resultado",
+                    "result", resumed ? "resumed" : "ok").increment();
+            this.bytesIn = metrics.counter("p2p_bytes_in_total", "Bytes de frames recebidos pelo socket por conexão",
+                    "peer", remoteUsername);
+            this.bytesOut = metrics.counter("p2p_bytes_out_total", "Bytes de frames escritos no socket por conexão",
+                    "peer", remoteUsername);
+
+            if (resumed) {
+                // O reenvio só sai em startReplay(), com a conexão já registrada; até lá, escritas novas esperam
+                this.replayFrom = remoteAcknowledged;
+                this.replayed = new CountDownLatch(1);
+            }
+
+            this.maxBatch = batchMaxMessages;
+            if (maxBatch > 0) {
+                this.windowNanos = batchWindowNanos;
+                this.outbound = new PriorityLaneQueue<>(OUTBOUND_QUEUE_CAPACITY);
+                this.batchesOut = metrics.counter("p2p_batches_out_total", "Lotes de frames escritos por conexão",
+                        "peer", remoteUsername);
+                metrics.gauge("p2p_outbound_queue_depth", "Mensagens aguardando o próximo lote de saída",
+                        outbound::size, "peer", remoteUsername);
+                threadPool.submit(this::writeBatches);
+            }
+        }
+
+        // Chamado depois que a conexão entra em connections, para que nenhuma mensagem fique entre a sessão
+        // antiga e a nova. Os dois lados reenviam ao mesmo tempo; escrever na thread do handshake, antes de
+        // a thread leitora existir, travaria as duas pontas com buffers grandes, então o reenvio vai para outra
+        public void startReplay() {
+            if (resumed) {
+                threadPool.submit(this::writeReplay);
+            }
+        }
+
+        private void writeReplay() {
             try {
-                this.oos = new ObjectOutputStream(socket.getOutputStream());
-                this.ois = new ObjectInputStream(socket.getInputStream());
-                
-                // Troca de nomes de usuário
-                oos.writeObject(owner.getUsername());
-                
-                socket.setSoTimeout(5000);
-                try {
-                    this.remoteUsername = (String) ois.readObject();
-                } catch (java.net.SocketTimeoutException e) {
-                    this.remoteUsername = "Peer_" + System.currentTimeMillis() % 10000;
-                    System.out.println("Timeout ao receber username, usando: " + this.remoteUsername);
+                owner.takeOverSession(this);
+                if (!session.canReplayAfter(replayFrom)) {
+                    // Frames saíram do buffer depois do handshake: melhor recomeçar do zero que entregar com buraco
+                    fireNotice("Sessão com " + remoteUsername + " não pode ser retomada: mensagens não confirmadas "
+                            + "já saíram do buffer de reenvio e podem ter sido perdidas");
+                    owner.forgetSession(session);
+                    writeFailed = true;
+                    close();
+                    return;
                 }
-                
-                socket.setSoTimeout(0);
+                List<Frame> replay = session.framesAfter(replayFrom);
+                if (!replay.isEmpty()) {
+                    synchronized (writeLock) {
+                        codec.write(replay);
+                    }
+                }
+            } catch (IOException e) {
+                if (connected) {
+                    detached = running && isResumable(session);
+                    writeFailed = true;
+                    fireError("Erro ao reenviar mensagens para " + remoteUsername, e);
+                    close();
+                }
+            } finally {
+                replayed.countDown();
+            }
+        }
 
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Erro ao configurar streams: " + e.getMessage());
-                connected = false;
+        // Deixa de numerar para a retomada e espera quem já estava numerando (inclusive o escritor)
+        private void stopBuffering() {
+            detached = false;
+            awaitWriter();
+            awaitWrites();
+        }
+
+        private void bufferUnsent(Message message) {
+            awaitWriter();
+            synchronized (writeLock) {
+                // Conferido sob o lock: quem assume a sessão desliga detached e depois espera o lock
+                if (detached) {
+                    session.bufferUnsent(message);
+                }
+            }
+            if (detached && session.isExpired(System.currentTimeMillis())) {
+                owner.forgetSession(session);
+            }
+        }
+
+        // Espera a escrita em andamento terminar; depois do close() nenhuma outra começa
+        private void awaitWrites() {
+            synchronized (writeLock) {
+                // Só sincroniza com quem está escrevendo
+            }
+        }
+
+        private boolean awaitReplay() {
+            try {
+                replayed.await();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
 
@@ -315,44 +946,271 @@ public class Peer {
         public void run() {
             try {
                 while (connected) {
-                    Message message = (Message) ois.readObject();
-                    if (message.getType() == Message.MessageType.DISCONNECT) {
-                        System.out.println("\n" + message.getSenderUsername() + " desconectado.");
-                        System.out.print("> ");
-                        
-                        // Fecha a conexão do lado do cliente
-                        close();
-                        owner.connections.remove(this);
-                    } else {
-                        owner.relayMessage(message);
+                    awaitData();
+                    long start = System.nanoTime();
+                    List<Frame> frames = codec.read();
+                    frameReadLatency.recordSince(start);
+
+                    // Um lote é desfeito aqui; sequência e deduplicação continuam valendo por mensagem
+                    for (Frame frame : frames) {
+                        messagesIn.increment();
+                        if (!session.acceptInbound(frame)) {
+                            messagesDeduped.increment();
+                            continue;
+                        }
+                        Message message = frame.getMessage();
+                        traceCollector.onReceived(message);
+                        if (message.getType() == Message.MessageType.DISCONNECT) {
+                            firePeerEvent(message.getSenderUsername(),
+                                    listener -> listener.onPeerDisconnected(message.getSenderUsername(), remoteAddress, true));
+
+                            // Fecha a conexão do lado do cliente
+                            gracefulDisconnect = true;
+                            close();
+                            owner.connections.remove(this);
+                            break;
+                        } else {
+                            submitRelay(message);
+                        }
                     }
                 }
-            } catch (IOException | ClassNotFoundException e) {
-                if (connected) {
-                    System.out.println("\nConexão perdida com " + getRemoteUsername() + "@" + getRemoteAddress());
-                    System.out.print("> ");
+            } catch (IOException e) {
+                if (connected || writeFailed) {
+                    String lostUsername = getRemoteUsername();
+                    firePeerEvent(lostUsername, listener -> listener.onPeerDisconnected(lostUsername, remoteAddress, false));
                 }
             } finally {
+                boolean lost = (connected || writeFailed) && !gracefulDisconnect;
+                if (lost && running && isResumable(session)) {
+                    // Até a retomada (ou a sessão expirar), o que seria enviado a este peer continua numerado
+                    detached = true;
+                    detachedConnections.add(this);
+                }
                 close();
                 connections.remove(this);
+                if (gracefulDisconnect && targetAddress != null) {
+                    outboundSessions.remove(targetAddress);
+                }
+                if (lost && running && targetAddress != null) {
+                    scheduleReconnect(targetAddress);
+                }
+            }
+        }
+
+        // A thread leitora só decodifica e confere a sequência; o resto do relay vai para o worker do remetente
+        private void submitRelay(Message message) throws IOException {
+            RelayPipeline pipeline = relayPipeline;
+            if (pipeline == null) {
+                // Peer usado sem start(), como nos benchmarks
+                relayInbound(message);
+                return;
+            }
+            long queuedAt = System.nanoTime();
+            try {
+                pipeline.submit(message.getSenderUsername(), () -> {
+                    relayQueueWait.recordSince(queuedAt);
+                    relayInbound(message);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Relay interrompido");
+            }
+        }
+
+        private void relayInbound(Message message) {
+            if (!owner.relayMessage(message)) {
+                messagesDeduped.increment();
             }
         }
 
         public void sendMessage(Message message) {
+            if (detached) {
+                bufferUnsent(message);
+                return;
+            }
+            if (outbound != null) {
+                enqueue(message);
+                return;
+            }
             try {
-                if (connected && oos != null) {
-                    oos.writeObject(message);
+                if (codec != null && awaitReplay()) {
+                    synchronized (writeLock) {
+                        if (!connected) {
+                            if (detached) {
+                                session.bufferUnsent(message);
+                            }
+                            return;
+                        }
+                        long start = System.nanoTime();
+                        codec.write(session.nextFrame(message));
+                        frameWriteLatency.recordSince(start);
+                    }
+                    messagesOut.increment();
                 }
             } catch (IOException e) {
-                System.err.println("Erro ao enviar mensagem para " + remoteUsername + ": " + e.getMessage());
+                fireError("Erro ao enviar mensagem para " + remoteUsername, e);
             }
         }
 
-        public String getRemoteAddress() {
-            if (socket != null && !socket.isClosed()) {
-                return socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        // Fila cheia segura quem envia (backpressure) até o escritor esvaziá-la ou a conexão cair
+        private void enqueue(Message message) {
+            boolean queued = false;
+            try {
+                while (connected && !queued) {
+                    queued = outbound.offerData(message, 100, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (connected) {
+                return;
+            }
+            if (!queued) {
+                bufferUnsent(message);
+                return;
+            }
+            // O escritor pode já ter esvaziado a fila; o que chegou depois é numerado aqui
+            synchronized (writeLock) {
+                if (writerFinished && detached) {
+                    numberUnsent(Collections.emptyList());
+                }
             }
-            return "desconhecido";
+        }
+
+        // Dá número de sequência, sem escrever, ao que ficou na fila quando a conexão caiu: os frames
+        // entram no buffer de reenvio da sessão e vão na retomada, como acontece na escrita direta
+        private void numberUnsent(List<Message> pending) {
+            for (Message message : pending) {
+                session.nextFrame(message);
+            }
+            Message next;
+            while ((next = outbound.poll()) != null) {
+                if (next != CLOSE_MARKER) {
+                    session.nextFrame(next);
+                }
+            }
+        }
+
+        // Espera o escritor terminar de numerar o que sobrou, para que nada seja numerado fora de ordem depois
+        private void awaitWriter() {
+            if (outbound == null) {
+                return;
+            }
+            try {
+                // O close() já acordou o escritor; o limite só protege contra um escritor que nunca rodou
+                writerDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeBatches() {
+            List<Message> pending = new ArrayList<>(maxBatch);
+            List<Frame> frames = new ArrayList<>(maxBatch);
+            boolean closing = false;
+            try {
+                replayed.await();
+                while (connected && !closing) {
+                    Message next = outbound.take();
+                    long deadline = System.nanoTime() + windowNanos;
+                    while (next != null) {
+                        if (next == CLOSE_MARKER) {
+                            closing = true;
+                            break;
+                        }
+                        pending.add(next);
+                        if (pending.size() >= maxBatch) {
+                            break;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        next = remaining > 0 ? outbound.poll(remaining, TimeUnit.NANOSECONDS) : outbound.poll();
+                    }
+                    if (!pending.isEmpty() && connected) {
+                        writeBatch(pending, frames);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (connected) {
+                    detached = running && isResumable(session);
+                    writeFailed = true;
+                    fireError("Erro ao enviar mensagem para " + remoteUsername, e);
+                }
+            } finally {
+                close();
+                synchronized (writeLock) {
+                    numberUnsent(pending);
+                    writerFinished = true;
+                }
+                writerDone.countDown();
+            }
+        }
+
+        private void writeBatch(List<Message> pending, List<Frame> frames) throws IOException {
+            int count;
+            synchronized (writeLock) {
+                // Conexão fechada (ou substituída na retomada) não numera mais frames da sessão
+                if (!connected) {
+                    return;
+                }
+                long start = System.nanoTime();
+                for (Message message : pending) {
+                    frames.add(session.nextFrame(message));
+                }
+                // Já numeradas: se a escrita falhar, estão no buffer de reenvio
+                count = pending.size();
+                pending.clear();
+                codec.write(frames);
+                frameWriteLatency.recordSince(start);
+            }
+            frames.clear();
+            messagesOut.add(count);
+            batchesOut.increment();
+        }
+
+        // Despedida no encerramento do peer: com batching, vai depois dos dados já enfileirados
+        // (quem recebe fecha a conexão ao ler o DISCONNECT) e o socket só fecha depois do envio
+        public void finish(Message goodbye) {
+            if (outbound == null) {
+                sendMessage(goodbye);
+                close();
+                return;
+            }
+            try {
+                if (outbound.offerData(goodbye, 100, TimeUnit.MILLISECONDS)
+                        && outbound.offerData(CLOSE_MARKER, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            close();
+        }
+
+        // Bloqueia até o próximo frame começar a chegar, para que a leitura medida não inclua a espera pela rede
+        private void awaitData() throws IOException {
+            in.mark(1);
+            if (in.read() < 0) {
+                throw new EOFException();
+            }
+            in.reset();
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        public boolean isResumeRefused() {
+            return resumeRefused;
+        }
+
+        public String getRemoteAddress() {
+            return remoteAddress;
         }
 
         public String getRemoteUsername() {
@@ -365,13 +1223,20 @@ public class Peer {
 
         public void close() {
             connected = false;
-            
+            // Um reenvio que não vai mais acontecer não pode segurar o escritor
+            replayed.countDown();
+            if (outbound != null) {
+                // Faixa de controle: o escritor acorda na hora e, sem escrever, numera o que sobrou na fila para a retomada
+                outbound.putControl(CLOSE_MARKER);
+            }
+
             try {
-                if (ois != null) ois.close();
-                if (oos != null) oos.close();
                 if (socket != null && !socket.isClosed()) socket.close();
             } catch (IOException e) {
-                System.err.println("Erro ao fechar conexão: " + e.getMessage());
+                fireError("Erro ao fechar conexão", e);
+            }
+            if (codec != null) {
+                codec.close();
             }
         }
     }
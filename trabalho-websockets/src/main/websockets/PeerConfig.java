@@ -0,0 +1,156 @@
+package websockets;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Configuração do modo daemon, lida de um arquivo .properties (veja daemon.example.properties)
+public class PeerConfig {
+    private String username;
+    private int port;
+    private boolean discoveryEnabled = true;
+    private String historyFile = ChatHistory.DEFAULT_FILE_NAME;
+    private final List<String> connectTo = new ArrayList<>();
+    private double traceSampleRate = Peer.DEFAULT_TRACE_SAMPLE_RATE;
+    private int metricsHttpPort = 0;
+    private String metricsHttpHost = MetricsExporter.DEFAULT_HTTP_HOST;
+    private String metricsFile;
+    private double batchWindowMs = -1;
+    private int batchMaxMessages = 64;
+    private boolean compressionEnabled = true;
+    private int relayWorkers = 0;
+
+    public static PeerConfig load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        PeerConfig config = new PeerConfig();
+        config.username = properties.getProperty("username", "").trim();
+        if (config.username.isEmpty()) {
+            throw new IllegalArgumentException("Propriedade obrigatória ausente: username");
+        }
+        config.port = parseInt(properties, "port", -1);
+        if (config.port <= 0 || config.port > 65535) {
+            throw new IllegalArgumentException("Propriedade 'port' ausente ou inválida");
+        }
+        config.discoveryEnabled = Boolean.parseBoolean(properties.getProperty("discovery", "true").trim());
+        config.historyFile = properties.getProperty("history.file", ChatHistory.DEFAULT_FILE_NAME).trim();
+        for (String address : properties.getProperty("connect", "").split(",")) {
+            address = address.trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            if (!address.matches(".+:\\d+")) {
+                throw new IllegalArgumentException("Endereço inválido em 'connect': " + address);
+            }
+            config.connectTo.add(address);
+        }
+        try {
+            config.traceSampleRate = Double.parseDouble(
+                    properties.getProperty("trace.sample.rate", String.valueOf(Peer.DEFAULT_TRACE_SAMPLE_RATE)).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para trace.sample.rate");
+        }
+        config.metricsHttpPort = parseInt(properties, "metrics.http.port", 0);
+        String metricsHttpHost = properties.getProperty("metrics.http.host", "").trim();
+        if (!metricsHttpHost.isEmpty()) {
+            config.metricsHttpHost = metricsHttpHost;
+        }
+        String metricsFile = properties.getProperty("metrics.file", "").trim();
+        config.metricsFile = metricsFile.isEmpty() ? null : metricsFile;
+        String batchWindow = properties.getProperty("batch.window.ms", "").trim();
+        if (!batchWindow.isEmpty()) {
+            try {
+                config.batchWindowMs = Double.parseDouble(batchWindow);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor inválido para batch.window.ms: " + batchWindow);
+            }
+            if (config.batchWindowMs < 0) {
+                throw new IllegalArgumentException("Valor inválido para batch.window.ms: " + batchWindow);
+            }
+        }
+        config.compressionEnabled = Boolean.parseBoolean(properties.getProperty("compression", "true").trim());
+        config.relayWorkers = parseInt(properties, "relay.workers", 0);
+        if (config.relayWorkers < 0) {
+            throw new IllegalArgumentException("Valor inválido para relay.workers: " + config.relayWorkers);
+        }
+        config.batchMaxMessages = parseInt(properties, "batch.max.messages", 64);
+        if (config.batchMaxMessages < 1 || config.batchMaxMessages > FrameCodec.MAX_BATCH_FRAMES) {
+            throw new IllegalArgumentException("Valor inválido para batch.max.messages: " + config.batchMaxMessages);
+        }
+        return config;
+    }
+
+    private static int parseInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + key + ": " + value);
+        }
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isDiscoveryEnabled() {
+        return discoveryEnabled;
+    }
+
+    public String getHistoryFile() {
+        return historyFile;
+    }
+
+    public List<String> getConnectTo() {
+        return connectTo;
+    }
+
+    public double getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    public int getMetricsHttpPort() {
+        return metricsHttpPort;
+    }
+
+    public String getMetricsHttpHost() {
+        return metricsHttpHost;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    // Negativo quando o batching não foi configurado
+    public double getBatchWindowMs() {
+        return batchWindowMs;
+    }
+
+    public int getBatchMaxMessages() {
+        return batchMaxMessages;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    // 0 usa um worker por núcleo
+    public int getRelayWorkers() {
+        return relayWorkers;
+    }
+}
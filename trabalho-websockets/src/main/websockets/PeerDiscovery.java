@@ -6,9 +6,11 @@ import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PeerDiscovery implements Runnable {
 
@@ -20,10 +22,21 @@ public class PeerDiscovery implements Runnable {
     private final MulticastSocket socket;
     private final InetAddress group;
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final Map<String, String> discoveredPeers = new HashMap<>();
+    private final Map<String, String> discoveredPeers = new ConcurrentHashMap<>();
+    private final LongAdder announcementsReceived;
+    private final LongAdder peersDiscovered;
+    private final LongAdder addressChanges;
 
     public PeerDiscovery(Peer peer) throws IOException {
         this.peer = peer;
+        Metrics metrics = peer.getMetrics();
+        this.announcementsReceived = metrics.counter("p2p_discovery_announcements_total",
+                "Anúncios multicast recebidos de outros peers");
+        this.peersDiscovered = metrics.counter("p2p_discovery_new_peers_total",
+                "Peers vistos pela primeira vez");
+        this.addressChanges = metrics.counter("p2p_discovery_address_changes_total",
+                "Peers já conhecidos que anunciaram um endereço diferente");
+        metrics.gauge("p2p_discovered_peers", "Peers conhecidos pela descoberta", discoveredPeers::size);
         socket = new MulticastSocket(DISCOVERY_PORT);
         group = InetAddress.getByName(MULTICAST_ADDRESS);
         socket.joinGroup(group);
@@ -43,7 +56,7 @@ public class PeerDiscovery implements Runnable {
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length, group, DISCOVERY_PORT);
                 socket.send(packet);
             } catch (IOException e) {
-                System.err.println("Erro ao broadcastar presença: " + e.getMessage());
+                peer.fireError("Erro ao broadcastar presença", e);
             }
         }, 0, BROADCAST_INTERVAL, TimeUnit.SECONDS);
     }
@@ -64,17 +77,20 @@ public class PeerDiscovery implements Runnable {
 
                         if (!username.equals(peer.getUsername())) {
                             String address = packet.getAddress().getHostAddress() + ":" + port;
-                            if (!discoveredPeers.containsKey(username)) {
-                                System.out.println("\nPeer descoberto: " + username + " em " + address);
-                                System.out.print("> ");
+                            announcementsReceived.increment();
+                            String previous = discoveredPeers.put(username, address);
+                            if (previous == null) {
+                                peersDiscovered.increment();
+                                peer.fireControl(listener -> listener.onPeerDiscovered(username, address));
+                            } else if (!previous.equals(address)) {
+                                addressChanges.increment();
                             }
-                            discoveredPeers.put(username, address);
                         }
                     }
                 }
             } catch (IOException e) {
                 if (!socket.isClosed()) {
-                    System.err.println("Erro ao receber broadcast: " + e.getMessage());
+                    peer.fireError("Erro ao receber broadcast", e);
                 }
             }
         }
@@ -86,7 +102,7 @@ public class PeerDiscovery implements Runnable {
             try {
                 socket.leaveGroup(group);
             } catch (IOException e) {
-                System.err.println("Erro ao sair do grupo multicast: " + e.getMessage());
+                peer.fireError("Erro ao sair do grupo multicast", e);
             }
             socket.close();
         }
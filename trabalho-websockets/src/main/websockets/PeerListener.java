@@ -0,0 +1,26 @@
+package websockets;
+
+// Callbacks de um PeerNode. São chamados em ordem, em uma única thread de eventos do peer,
+// nunca nas threads que leem os sockets; implementações lentas atrasam só os próximos eventos
+public interface PeerListener {
+    default void onMessage(Message message) {
+    }
+
+    default void onMessageSent(Message message) {
+    }
+
+    default void onPeerConnected(String username, String address, boolean resumed) {
+    }
+
+    default void onPeerDisconnected(String username, String address, boolean graceful) {
+    }
+
+    default void onPeerDiscovered(String username, String address) {
+    }
+
+    default void onNotice(String text) {
+    }
+
+    default void onError(String text, Throwable cause) {
+    }
+}
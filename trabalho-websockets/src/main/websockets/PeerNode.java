@@ -0,0 +1,35 @@
+package websockets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// API para embutir um nó do chat em outra aplicação; o Main (CLI) e o Daemon são clientes dela
+public interface PeerNode {
+    boolean start();
+
+    void stop();
+
+    CompletableFuture<Void> connect(String host, int port);
+
+    // Conecta a um peer encontrado pela descoberta multicast
+    CompletableFuture<Void> connect(String username);
+
+    // Completa com a mensagem depois de escrita em todas as conexões (ou enfileirada, com batching),
+    // ou falha se não houver conexões
+    CompletableFuture<Message> send(String content);
+
+    void addListener(PeerListener listener);
+
+    void removeListener(PeerListener listener);
+
+    List<ConnectionInfo> getConnections();
+
+    Map<String, String> getDiscoveredPeers();
+
+    String getUsername();
+
+    int getPort();
+
+    Metrics getMetrics();
+}
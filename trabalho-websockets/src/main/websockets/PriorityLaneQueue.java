@@ -0,0 +1,123 @@
+package websockets;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fila bloqueante com duas faixas: o que está na faixa de controle sempre sai antes dos dados já
+// enfileirados. Só a faixa de dados tem limite, para que controle nunca espere atrás de uma rajada.
+public class PriorityLaneQueue<T> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<T> control = new ArrayDeque<>();
+    private final ArrayDeque<T> data = new ArrayDeque<>();
+    private final int dataCapacity;
+
+    public PriorityLaneQueue(int dataCapacity) {
+        this.dataCapacity = dataCapacity;
+    }
+
+    public void putControl(T item) {
+        lock.lock();
+        try {
+            control.addLast(item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void putData(T item) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (data.size() >= dataCapacity) {
+                notFull.await();
+            }
+            data.addLast(item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Retorna false se a faixa de dados continuar cheia depois do timeout
+    public boolean offerData(T item, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (data.size() >= dataCapacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            data.addLast(item);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T dequeue() {
+        T item = control.pollFirst();
+        if (item != null) {
+            return item;
+        }
+        item = data.pollFirst();
+        if (item != null) {
+            notFull.signal();
+        }
+        return item;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return control.size() + data.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package websockets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Estágio de relay fora das threads leitoras: cada remetente cai sempre no mesmo worker (hash do nome),
+// então as mensagens de um remetente são processadas na ordem em que chegaram, enquanto remetentes
+// diferentes andam em paralelo. Fila cheia segura a thread leitora, e o TCP segura o peer remoto.
+public class RelayPipeline {
+    public static final int QUEUE_CAPACITY = 1024;
+
+    private final List<BlockingQueue<Runnable>> queues = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Peer owner;
+    private volatile boolean running = true;
+
+    public RelayPipeline(Peer owner, String name, int workerCount, Metrics metrics) {
+        this.owner = owner;
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+            metrics.gauge("p2p_relay_queue_depth", "Mensagens aguardando o worker de relay",
+                    queue::size, "worker", String.valueOf(i));
+
+            Thread worker = new Thread(() -> work(queue), name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+    }
+
+    public void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public void submit(String sender, Runnable task) throws InterruptedException {
+        queues.get(Math.floorMod(sender.hashCode(), queues.size())).put(task);
+    }
+
+    private void work(BlockingQueue<Runnable> queue) {
+        try {
+            while (running) {
+                Runnable task = queue.take();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    owner.fireError("Erro no relay de mensagem", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Encerrado pelo stop()
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+}
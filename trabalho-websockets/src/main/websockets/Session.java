@@ -0,0 +1,103 @@
+package websockets;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class Session {
+    public static final int REPLAY_BUFFER_SIZE = 1024;
+    public static final long SESSION_TTL_MS = 5 * 60 * 1000;
+
+    private final String token;
+    private final String remoteUsername;
+    private final ArrayDeque<Frame> replayBuffer = new ArrayDeque<>();
+    private long nextSequence = 1;
+    private long lastReceivedSequence = 0;
+    private long lastActive = System.currentTimeMillis();
+
+    public Session(String remoteUsername) {
+        this(UUID.randomUUID().toString(), remoteUsername);
+    }
+
+    public Session(String token, String remoteUsername) {
+        this.token = token;
+        this.remoteUsername = remoteUsername;
+    }
+
+    public synchronized Frame nextFrame(Message message) {
+        lastActive = System.currentTimeMillis();
+        return append(message);
+    }
+
+    // Numera sem conexão, à espera da retomada; não conta como atividade, para que a sessão
+    // de um peer que não volta ainda expire
+    public synchronized void bufferUnsent(Message message) {
+        append(message);
+    }
+
+    private Frame append(Message message) {
+        Frame frame = new Frame(nextSequence++, message);
+        replayBuffer.addLast(frame);
+        if (replayBuffer.size() > REPLAY_BUFFER_SIZE) {
+            replayBuffer.removeFirst();
+        }
+        return frame;
+    }
+
+    // false quando frames ainda não confirmados já saíram do buffer: a retomada entregaria um histórico com buraco
+    public synchronized boolean canReplayAfter(long acknowledgedSequence) {
+        if (acknowledgedSequence >= nextSequence - 1) {
+            return true;
+        }
+        return !replayBuffer.isEmpty() && acknowledgedSequence >= replayBuffer.peekFirst().getSequence() - 1;
+    }
+
+    // Retorna false para frames já recebidos (reenviados durante a retomada)
+    public synchronized boolean acceptInbound(Frame frame) {
+        lastActive = System.currentTimeMillis();
+        if (frame.getSequence() <= lastReceivedSequence) {
+            return false;
+        }
+        lastReceivedSequence = frame.getSequence();
+        return true;
+    }
+
+    public synchronized List<Frame> framesAfter(long acknowledgedSequence) throws IOException {
+        if (!canReplayAfter(acknowledgedSequence)) {
+            throw new IOException("Frames após " + acknowledgedSequence + " já saíram do buffer de reenvio");
+        }
+        List<Frame> frames = new ArrayList<>();
+        for (Frame frame : replayBuffer) {
+            if (frame.getSequence() > acknowledgedSequence) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    public synchronized boolean isExpired(long now) {
+        return now - lastActive > SESSION_TTL_MS;
+    }
+
+    public synchronized void touch() {
+        lastActive = System.currentTimeMillis();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getRemoteUsername() {
+        return remoteUsername;
+    }
+
+    public synchronized long getBufferedFrameCount() {
+        return replayBuffer.size();
+    }
+
+    public synchronized long getLastReceivedSequence() {
+        return lastReceivedSequence;
+    }
+}
@@ -0,0 +1,96 @@
+package websockets;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class Trace implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_HOPS = 32;
+
+    public static class Hop implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String node;
+        private final long receivedMicros;
+        private long forwardedMicros;
+
+        public Hop(String node, long receivedMicros, long forwardedMicros) {
+            this.node = node;
+            this.receivedMicros = receivedMicros;
+            this.forwardedMicros = forwardedMicros;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public long getReceivedMicros() {
+            return receivedMicros;
+        }
+
+        // Zero quando o nó não repassou a mensagem
+        public long getForwardedMicros() {
+            return forwardedMicros;
+        }
+    }
+
+    private final String originNode;
+    private final long originMicros;
+    private final List<Hop> hops;
+
+    public Trace(String originNode, long originMicros) {
+        this(originNode, originMicros, new ArrayList<>());
+    }
+
+    Trace(String originNode, long originMicros, List<Hop> hops) {
+        this.originNode = originNode;
+        this.originMicros = originMicros;
+        this.hops = hops;
+    }
+
+    public synchronized long getLastTimestamp() {
+        if (hops.isEmpty()) {
+            return originMicros;
+        }
+        Hop last = hops.get(hops.size() - 1);
+        return Math.max(last.receivedMicros, last.forwardedMicros);
+    }
+
+    public synchronized void markReceived(String node, long micros) {
+        if (hops.size() < MAX_HOPS) {
+            hops.add(new Hop(node, micros, 0));
+        }
+    }
+
+    public synchronized void markForwarded(String node, long micros) {
+        if (!hops.isEmpty()) {
+            Hop last = hops.get(hops.size() - 1);
+            if (last.node.equals(node)) {
+                last.forwardedMicros = micros;
+            }
+        }
+    }
+
+    public String getOriginNode() {
+        return originNode;
+    }
+
+    public long getOriginMicros() {
+        return originMicros;
+    }
+
+    public synchronized int getHopCount() {
+        return hops.size();
+    }
+
+    public synchronized List<Hop> getHops() {
+        List<Hop> copy = new ArrayList<>(hops.size());
+        for (Hop hop : hops) {
+            copy.add(new Hop(hop.node, hop.receivedMicros, hop.forwardedMicros));
+        }
+        return Collections.unmodifiableList(copy);
+    }
+}
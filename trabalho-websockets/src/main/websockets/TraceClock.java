@@ -0,0 +1,31 @@
+package websockets;
+
+import java.time.Instant;
+
+// Relógio híbrido (HLC) em microssegundos: acompanha o relógio de parede, mas nunca fica atrás de
+// um timestamp já observado, para que latências entre nós com relógios desalinhados não fiquem negativas
+public class TraceClock {
+    private final long baseEpochMicros;
+    private final long baseNanos;
+    private long last;
+
+    public TraceClock() {
+        Instant now = Instant.now();
+        this.baseEpochMicros = now.getEpochSecond() * 1_000_000L + now.getNano() / 1000;
+        this.baseNanos = System.nanoTime();
+    }
+
+    private long physicalMicros() {
+        return baseEpochMicros + (System.nanoTime() - baseNanos) / 1000;
+    }
+
+    public synchronized long now() {
+        last = Math.max(last + 1, physicalMicros());
+        return last;
+    }
+
+    public synchronized long observe(long remoteMicros) {
+        last = Math.max(Math.max(last + 1, remoteMicros + 1), physicalMicros());
+        return last;
+    }
+}
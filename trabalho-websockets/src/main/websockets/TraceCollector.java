@@ -0,0 +1,144 @@
+package websockets;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TraceCollector {
+    private static final int RECENT_PATHS = 512;
+
+    public static class TracedPath {
+        private final UUID messageId;
+        private final String originNode;
+        private final long originMicros;
+        private final List<Trace.Hop> hops;
+
+        TracedPath(UUID messageId, Trace trace) {
+            this.messageId = messageId;
+            this.originNode = trace.getOriginNode();
+            this.originMicros = trace.getOriginMicros();
+            this.hops = trace.getHops();
+        }
+
+        public long getLatencyMicros() {
+            if (hops.isEmpty()) {
+                return 0;
+            }
+            return hops.get(hops.size() - 1).getReceivedMicros() - originMicros;
+        }
+
+        public UUID getMessageId() {
+            return messageId;
+        }
+
+        public String getOriginNode() {
+            return originNode;
+        }
+
+        public List<Trace.Hop> getHops() {
+            return hops;
+        }
+
+        public String describe() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%.3fms ", getLatencyMicros() / 1000.0)).append(originNode);
+            long previous = originMicros;
+            for (Trace.Hop hop : hops) {
+                sb.append(String.format(" -(%dµs)-> %s", hop.getReceivedMicros() - previous, hop.getNode()));
+                if (hop.getForwardedMicros() > 0) {
+                    sb.append(String.format(" [retido %dµs]", hop.getForwardedMicros() - hop.getReceivedMicros()));
+                    previous = hop.getForwardedMicros();
+                } else {
+                    previous = hop.getReceivedMicros();
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final String node;
+    private final Metrics metrics;
+    private final TraceClock clock = new TraceClock();
+    private final Map<String, LatencyHistogram> propagationByOrigin = new ConcurrentHashMap<>();
+    private final ArrayDeque<TracedPath> recentPaths = new ArrayDeque<>();
+    private final LongAdder tracesStarted;
+    private final LongAdder tracesReceived;
+    private volatile double sampleRate;
+
+    public TraceCollector(String node, Metrics metrics, double sampleRate) {
+        this.node = node;
+        this.metrics = metrics;
+        this.sampleRate = sampleRate;
+        this.tracesStarted = metrics.counter("p2p_traces_started_total", "Mensagens originadas aqui com rastreamento");
+        this.tracesReceived = metrics.counter("p2p_traces_received_total", "Mensagens rastreadas recebidas");
+    }
+
+    public void maybeStart(Message message) {
+        double rate = sampleRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            message.setTrace(new Trace(node, clock.now()));
+            tracesStarted.increment();
+        }
+    }
+
+    public void onReceived(Message message) {
+        Trace trace = message.getTrace();
+        if (trace != null) {
+            trace.markReceived(node, clock.observe(trace.getLastTimestamp()));
+        }
+    }
+
+    public void onForwarded(Message message) {
+        Trace trace = message.getTrace();
+        if (trace != null) {
+            trace.markForwarded(node, clock.now());
+        }
+    }
+
+    // Chamado uma vez por mensagem entregue (após a deduplicação), com o caminho percorrido até aqui
+    public void onDelivered(Message message) {
+        Trace trace = message.getTrace();
+        if (trace == null) {
+            return;
+        }
+        tracesReceived.increment();
+
+        TracedPath path = new TracedPath(message.getId(), trace);
+        propagationByOrigin.computeIfAbsent(path.getOriginNode(), origin ->
+                metrics.histogram("p2p_trace_propagation_seconds",
+                        "Latência de propagação da origem até este peer (mensagens amostradas)", "origin", origin))
+                .recordNanos(path.getLatencyMicros() * 1000);
+
+        synchronized (recentPaths) {
+            recentPaths.addLast(path);
+            if (recentPaths.size() > RECENT_PATHS) {
+                recentPaths.removeFirst();
+            }
+        }
+    }
+
+    public List<TracedPath> slowestRecentPaths(int limit) {
+        List<TracedPath> paths;
+        synchronized (recentPaths) {
+            paths = new ArrayList<>(recentPaths);
+        }
+        paths.sort(Comparator.comparingLong(TracedPath::getLatencyMicros).reversed());
+        return paths.subList(0, Math.min(limit, paths.size()));
+    }
+
+    public Map<String, LatencyHistogram> getPropagationByOrigin() {
+        return new TreeMap<>(propagationByOrigin);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Taxa de amostragem deve estar entre 0 e 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+}
@@ -0,0 +1,235 @@
+package websockets;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFrameCodecTest {
+
+    // Um lado escreve tudo e o outro lê depois, cada um com o próprio compressor e tabela de símbolos,
+    // como as duas pontas de uma conexão
+    private static class Link {
+        private final boolean batching;
+        private final boolean compression;
+        private final boolean symbols;
+        private final ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        private final BinaryFrameCodec writer;
+        private BinaryFrameCodec reader;
+
+        Link(boolean batching, boolean compression, boolean symbols) {
+            this.batching = batching;
+            this.compression = compression;
+            this.symbols = symbols;
+            writer = new BinaryFrameCodec(null, new DataOutputStream(wire), batching, compressor(), symbols);
+        }
+
+        private PayloadCompressor compressor() {
+            return compression ? new PayloadCompressor(PayloadCompressor.DEFAULT_THRESHOLD_BYTES) : null;
+        }
+
+        int write(Frame... frames) throws IOException {
+            int before = wire.size();
+            writer.write(Arrays.asList(frames));
+            return wire.size() - before;
+        }
+
+        List<Frame> read() throws IOException {
+            if (reader == null) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(wire.toByteArray()));
+                reader = new BinaryFrameCodec(in, null, batching, compressor(), symbols);
+            }
+            return reader.read();
+        }
+
+        Frame readOne() throws IOException {
+            List<Frame> frames = read();
+            assertEquals(1, frames.size());
+            return frames.get(0);
+        }
+    }
+
+    private static Frame frame(long sequence, String sender, String content) {
+        return new Frame(sequence, new Message(sender, content, Message.MessageType.TEXT));
+    }
+
+    private static String repeat(String text, int times) {
+        return String.join("", Collections.nCopies(times, text));
+    }
+
+    private static void assertSameMessage(Frame expected, Frame actual) {
+        assertEquals(expected.getSequence(), actual.getSequence());
+        Message sent = expected.getMessage();
+        Message received = actual.getMessage();
+        assertEquals(sent.getId(), received.getId());
+        assertEquals(sent.getSenderUsername(), received.getSenderUsername());
+        assertEquals(sent.getContent(), received.getContent());
+        assertEquals(sent.getTimestamp(), received.getTimestamp());
+        assertEquals(sent.getType(), received.getType());
+    }
+
+    @Test
+    void roundTripsContentAroundCompressionThreshold() throws IOException {
+        int threshold = PayloadCompressor.DEFAULT_THRESHOLD_BYTES;
+        List<String> contents = Arrays.asList(
+                "",
+                "oi",
+                repeat("a", threshold - 1),
+                repeat("a", threshold),
+                repeat("a", threshold + 1),
+                repeat("mensagem repetida ", 200),
+                "ação, coração e pão " + repeat("ç", threshold));
+
+        for (boolean compression : new boolean[]{false, true}) {
+            Link link = new Link(false, compression, false);
+            List<Frame> sent = new ArrayList<>();
+            for (String content : contents) {
+                Frame frame = frame(sent.size() + 1, "alice", content);
+                sent.add(frame);
+                link.write(frame);
+            }
+            for (Frame frame : sent) {
+                assertSameMessage(frame, link.readOne());
+            }
+        }
+    }
+
+    @Test
+    void compressesOnlyAboveThreshold() throws IOException {
+        String large = repeat("mensagem repetida ", 200);
+        String small = repeat("b", PayloadCompressor.DEFAULT_THRESHOLD_BYTES - 1);
+
+        int largePlain = new Link(false, false, false).write(frame(1, "alice", large));
+        int largeCompressed = new Link(false, true, false).write(frame(1, "alice", large));
+        assertTrue(largeCompressed < largePlain / 4, "deflate deveria encolher conteúdo repetitivo");
+
+        // Abaixo do limiar só entra o byte que marca o conteúdo como cru
+        int smallPlain = new Link(false, false, false).write(frame(1, "alice", small));
+        int smallCompressed = new Link(false, true, false).write(frame(1, "alice", small));
+        assertEquals(smallPlain + 1, smallCompressed);
+    }
+
+    @Test
+    void repeatedSendersUseSymbols() throws IOException {
+        Link link = new Link(false, false, true);
+        int first = link.write(frame(1, "remetente-com-nome-longo", "a"));
+        int second = link.write(frame(2, "remetente-com-nome-longo", "b"));
+        int third = link.write(frame(3, "bob", "c"));
+        int fourth = link.write(frame(4, "remetente-com-nome-longo", "d"));
+        assertTrue(second < first, "o remetente repetido deveria ir como id");
+        assertEquals(second, fourth);
+
+        Frame a = link.readOne();
+        Frame b = link.readOne();
+        Frame c = link.readOne();
+        Frame d = link.readOne();
+        assertEquals("remetente-com-nome-longo", a.getMessage().getSenderUsername());
+        assertSame(a.getMessage().getSenderUsername(), b.getMessage().getSenderUsername());
+        assertSame(a.getMessage().getSenderUsername(), d.getMessage().getSenderUsername());
+        assertEquals("bob", c.getMessage().getSenderUsername());
+        assertEquals("d", d.getMessage().getContent());
+    }
+
+    @Test
+    void fullSymbolTableFallsBackToLiterals() throws IOException {
+        Link link = new Link(false, true, true);
+        List<Frame> sent = new ArrayList<>();
+        // Passa do limite da tabela e depois volta a usar remetentes já definidos e novos
+        for (int i = 0; i < 4096 + 50; i++) {
+            sent.add(frame(sent.size() + 1, "peer-" + i, "m" + i));
+        }
+        for (int i = 0; i < 20; i++) {
+            sent.add(frame(sent.size() + 1, "peer-" + i, "de novo " + i));
+            sent.add(frame(sent.size() + 1, "peer-" + (4096 + i), "literal " + i));
+            sent.add(frame(sent.size() + 1, "novo-" + i, "depois de cheia " + i));
+        }
+        for (Frame frame : sent) {
+            link.write(frame);
+        }
+        for (Frame frame : sent) {
+            assertSameMessage(frame, link.readOne());
+        }
+    }
+
+    @Test
+    void batchesKeepOrderAndSequences() throws IOException {
+        Link link = new Link(true, true, true);
+        Frame[] first = {
+                frame(1, "alice", "um"),
+                frame(2, "bob", repeat("dois ", 40)),
+                new Frame(3, new Message("alice", "desconectando", Message.MessageType.DISCONNECT))
+        };
+        Frame[] second = {frame(4, "carol", "quatro")};
+        link.write(first);
+        link.write(second);
+        link.write();
+
+        List<Frame> readFirst = link.read();
+        assertEquals(first.length, readFirst.size());
+        for (int i = 0; i < first.length; i++) {
+            assertSameMessage(first[i], readFirst.get(i));
+        }
+        List<Frame> readSecond = link.read();
+        assertEquals(1, readSecond.size());
+        assertSameMessage(second[0], readSecond.get(0));
+        assertTrue(link.read().isEmpty());
+    }
+
+    @Test
+    void tracesKeepHops() throws IOException {
+        for (boolean symbols : new boolean[]{false, true}) {
+            Link link = new Link(true, true, symbols);
+            Message message = new Message("alice", "rastreada", Message.MessageType.TEXT);
+            Trace trace = new Trace("alice", 1_000);
+            trace.markReceived("bob", 1_500);
+            trace.markForwarded("bob", 1_700);
+            trace.markReceived("carol", 2_100);
+            message.setTrace(trace);
+            Frame untraced = frame(2, "bob", "sem trace");
+
+            link.write(new Frame(1, message), untraced);
+            List<Frame> frames = link.read();
+
+            Trace received = frames.get(0).getMessage().getTrace();
+            assertNotNull(received);
+            assertEquals("alice", received.getOriginNode());
+            assertEquals(1_000, received.getOriginMicros());
+            List<Trace.Hop> hops = received.getHops();
+            assertEquals(2, hops.size());
+            assertEquals("bob", hops.get(0).getNode());
+            assertEquals(1_500, hops.get(0).getReceivedMicros());
+            assertEquals(1_700, hops.get(0).getForwardedMicros());
+            assertEquals("carol", hops.get(1).getNode());
+            assertEquals(2_100, hops.get(1).getReceivedMicros());
+            assertEquals(0, hops.get(1).getForwardedMicros());
+            assertNull(frames.get(1).getMessage().getTrace());
+        }
+    }
+
+    @Test
+    void tracesAtHopLimitRoundTrip() throws IOException {
+        Link link = new Link(false, false, true);
+        Message message = new Message("alice", "longe", Message.MessageType.TEXT);
+        Trace trace = new Trace("alice", 0);
+        for (int i = 0; i < Trace.MAX_HOPS + 5; i++) {
+            trace.markReceived("no-" + i, i * 10L);
+            trace.markForwarded("no-" + i, i * 10L + 5);
+        }
+        message.setTrace(trace);
+        link.write(new Frame(1, message));
+
+        List<Trace.Hop> hops = link.readOne().getMessage().getTrace().getHops();
+        assertEquals(Trace.MAX_HOPS, hops.size());
+        assertEquals("no-" + (Trace.MAX_HOPS - 1), hops.get(Trace.MAX_HOPS - 1).getNode());
+        assertEquals((Trace.MAX_HOPS - 1) * 10L + 5, hops.get(Trace.MAX_HOPS - 1).getForwardedMicros());
+    }
+}